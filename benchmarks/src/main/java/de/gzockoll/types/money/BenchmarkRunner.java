@@ -0,0 +1,33 @@
+package de.gzockoll.types.money;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks single-threaded and with one thread per processor,
+ * both with the GC allocation profiler.
+ * <p/>
+ * Build: <code>mvn install</code> in the project root, then
+ * <code>mvn package</code> in this module.
+ * <p/>
+ * Usage: <code>java -jar target/benchmarks.jar [regexp]</code>. The first
+ * argument selects benchmarks, all benchmarks are run by default.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : MoneyBenchmark.class.getPackage().getName() + ".*";
+        int[] threadCounts = new int[] { 1, Runtime.getRuntime().availableProcessors() };
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
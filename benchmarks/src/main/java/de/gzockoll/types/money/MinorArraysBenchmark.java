@@ -0,0 +1,86 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Benchmarks of the bulk operations on minor unit arrays against the
+ * Money path per element.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinorArraysBenchmark {
+
+    @Param({ "100000" })
+    private int size;
+
+    private Currency eur;
+    private long[] balances;
+    private long[] fees;
+    private long[] results;
+    private BigDecimal tax;
+
+    @Setup
+    public void setUp() {
+        eur = Currency.getInstance("EUR");
+        Random random = new Random(1);
+        balances = new long[size];
+        fees = new long[size];
+        results = new long[size];
+        for (int i = 0; i < size; i++) {
+            balances[i] = random.nextInt(100000000);
+            fees[i] = random.nextInt(1000);
+        }
+        tax = new BigDecimal("0.19");
+    }
+
+    @Benchmark
+    public long[] scaleByMoney() {
+        for (int i = 0; i < size; i++)
+            results[i] = Money.fromMinor(balances[i], eur).multiply(tax).scaled().asMinor();
+        return results;
+    }
+
+    @Benchmark
+    public long[] scaleByMinorArrays() {
+        MinorArrays.scale(balances, 19, 100, RoundingMode.HALF_UP, results, size);
+        return results;
+    }
+
+    @Benchmark
+    public long[] scaleHalfEvenByMinorArrays() {
+        MinorArrays.scale(balances, 19, 100, RoundingMode.HALF_EVEN, results, size);
+        return results;
+    }
+
+    @Benchmark
+    public long[] subtractFees() {
+        MinorArrays.subtract(balances, fees, results, size);
+        return results;
+    }
+
+    @Benchmark
+    public long sum() {
+        return MinorArrays.sum(balances, size);
+    }
+}
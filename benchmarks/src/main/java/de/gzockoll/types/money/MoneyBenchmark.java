@@ -0,0 +1,149 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Benchmarks of the public Money operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private Currency eur;
+    private long minor;
+    private Money m1;
+    private Money m2;
+    private Money m3;
+    private BigDecimal factor;
+    private long[] ratios;
+    private MoneyExpression fee;
+
+    @Setup
+    public void setUp() {
+        eur = Currency.getInstance("EUR");
+        minor = 123456;
+        m1 = Money.fromMinor(minor, eur);
+        m2 = Money.fromMinor(98765, eur);
+        m3 = Money.fromMinor(minor, eur);
+        factor = new BigDecimal("1.03");
+        ratios = new long[] { 3, 2, 1 };
+        fee = MoneyExpression.of(eur).multiply(factor).add(m2).subtract(m3).multiply(factor);
+    }
+
+    @Benchmark
+    public Money fromMinor() {
+        return Money.fromMinor(minor, eur);
+    }
+
+    @Benchmark
+    public Money fromMajor() {
+        return Money.fromMajor(minor, eur);
+    }
+
+    @Benchmark
+    public Money euros() {
+        return Money.euros(minor);
+    }
+
+    @Benchmark
+    public Money cents() {
+        return Money.cents((int) minor);
+    }
+
+    @Benchmark
+    public Money add() {
+        return m1.add(m2);
+    }
+
+    @Benchmark
+    public Money subtract() {
+        return m1.subtract(m2);
+    }
+
+    @Benchmark
+    public Money multiplyDouble() {
+        return m1.multiply(0.19);
+    }
+
+    @Benchmark
+    public Money multiplyBigDecimal() {
+        return m1.multiply(factor);
+    }
+
+    @Benchmark
+    public Money compoundByLoop() {
+        Money m = m1;
+        for (int i = 0; i < 400; i++)
+            m = m.multiply(factor);
+        return m.scaled();
+    }
+
+    @Benchmark
+    public Money compoundByMultiplyRepeated() {
+        return m1.multiplyRepeated(factor, 400);
+    }
+
+    @Benchmark
+    public Money feeByChain() {
+        return m1.multiply(factor).add(m2).subtract(m3).multiply(factor).scaled();
+    }
+
+    @Benchmark
+    public Money feeByExpression() {
+        return fee.evaluate(m1);
+    }
+
+    @Benchmark
+    public Money[] allocateEqually() {
+        return m1.allocate(3);
+    }
+
+    @Benchmark
+    public Money[] allocateByRatios() {
+        return m1.allocate(ratios);
+    }
+
+    @Benchmark
+    public long asMinor() {
+        return m1.asMinor();
+    }
+
+    @Benchmark
+    public boolean isZero() {
+        return m1.isZero();
+    }
+
+    @Benchmark
+    public boolean equalsMoney() {
+        return m1.equals(m3);
+    }
+
+    @Benchmark
+    public int hashCodeMoney() {
+        return m1.hashCode();
+    }
+
+    @Benchmark
+    public String getAsFormattedString() {
+        return m1.getAsFormattedString(Locale.GERMANY);
+    }
+}
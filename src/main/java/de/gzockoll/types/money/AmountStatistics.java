@@ -0,0 +1,317 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.NoSuchElementException;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Streaming statistics of amounts of one currency: count, sum, minimum,
+ * maximum, mean and approximate quantiles.
+ * <p/>
+ * Count, sum, minimum and maximum are exact in minor units. Quantiles come
+ * from a fixed size sketch with logarithmic buckets: a bucket covers the
+ * amounts between gamma^(i-1) and gamma^i minor units, with gamma = (1 +
+ * a) / (1 - a) for the relative accuracy a, so a quantile is within a
+ * relative error of a of an amount of the requested rank. Instances are not
+ * thread-safe; collect per thread and {@link #combine(AmountStatistics)}
+ * the results.
+ */
+public final class AmountStatistics {
+
+    /**
+     * Default relative accuracy of quantiles.
+     */
+    public static final double DEFAULT_ACCURACY = 0.01;
+
+    private final Currency currency;
+    private final int currencyIndex;
+    private final double relativeAccuracy;
+
+    /**
+     * Natural logarithm of gamma.
+     */
+    private final double logGamma;
+
+    /**
+     * Counts of positive amounts by bucket.
+     */
+    private final long[] positive;
+
+    /**
+     * Counts of negative amounts by bucket of the absolute amount.
+     */
+    private final long[] negative;
+
+    private long zeros;
+    private long count;
+    private long sum;
+
+    /**
+     * Part of the sum which does not fit into sum, null if none.
+     */
+    private BigDecimal overflow;
+
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Creates empty statistics with {@link #DEFAULT_ACCURACY}.
+     * 
+     * @param currency
+     *            currency
+     */
+    public AmountStatistics(Currency currency) {
+        this(currency, DEFAULT_ACCURACY);
+    }
+
+    /**
+     * Creates empty statistics.
+     * 
+     * @param currency
+     *            currency
+     * @param relativeAccuracy
+     *            relative accuracy of quantiles, between 0 and 1 exclusive
+     */
+    public AmountStatistics(Currency currency, double relativeAccuracy) {
+        if (!Money.isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1))
+            throw new IllegalArgumentException("Invalid accuracy: " + relativeAccuracy);
+        this.currency = currency;
+        this.currencyIndex = CurrencyRegistry.indexOf(currency);
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+        int buckets = bucket(Long.MAX_VALUE) + 2;
+        this.positive = new long[buckets];
+        this.negative = new long[buckets];
+    }
+
+    /**
+     * Adds an amount.
+     * 
+     * @param value
+     *            amount
+     * @throws IllegalArgumentException
+     *             if the amount has another currency
+     * @throws ArithmeticException
+     *             if the amount has more fraction digits than its currency
+     */
+    public void accept(Money value) {
+        if (value.currencyIndex() != currencyIndex)
+            throw new IllegalArgumentException("money math mismatch");
+        accept(value.getAmount().movePointRight(CurrencyRegistry.fractionDigitsAt(currencyIndex)).longValueExact());
+    }
+
+    /**
+     * Adds an amount in minor currency.
+     * 
+     * @param minor
+     *            amount in minor currency
+     */
+    public void accept(long minor) {
+        count++;
+        long total = sum + minor;
+        if (((sum ^ total) & (minor ^ total)) < 0) {
+            addOverflow(BigDecimal.valueOf(minor));
+        } else {
+            sum = total;
+        }
+        if (minor < min)
+            min = minor;
+        if (minor > max)
+            max = minor;
+        if (minor > 0)
+            positive[bucket(minor)]++;
+        else if (minor < 0)
+            negative[bucket(minor == Long.MIN_VALUE ? Long.MAX_VALUE : -minor)]++;
+        else
+            zeros++;
+    }
+
+    /**
+     * Adds the amounts of other statistics.
+     * 
+     * @param other
+     *            statistics of the same currency and accuracy
+     * 
+     * @return this instance
+     */
+    public AmountStatistics combine(AmountStatistics other) {
+        if (other.currencyIndex != currencyIndex)
+            throw new IllegalArgumentException("money math mismatch");
+        if (other.relativeAccuracy != relativeAccuracy)
+            throw new IllegalArgumentException("Different accuracy: " + other.relativeAccuracy);
+        count += other.count;
+        zeros += other.zeros;
+        long total = sum + other.sum;
+        if (((sum ^ total) & (other.sum ^ total)) < 0)
+            addOverflow(BigDecimal.valueOf(other.sum));
+        else
+            sum = total;
+        if (other.overflow != null)
+            addOverflow(other.overflow);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for (int i = 0; i < positive.length; i++) {
+            positive[i] += other.positive[i];
+            negative[i] += other.negative[i];
+        }
+        return this;
+    }
+
+    /**
+     * Returns the currency.
+     * 
+     * @return currency
+     */
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Returns the number of amounts.
+     * 
+     * @return count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the exact sum.
+     * 
+     * @return sum
+     */
+    public Money getSum() {
+        if (overflow == null)
+            return Money.fromMinor(sum, currencyIndex);
+        return new Money(overflow.add(BigDecimal.valueOf(sum)).movePointLeft(
+                CurrencyRegistry.fractionDigitsAt(currencyIndex)), currency);
+    }
+
+    /**
+     * Returns the smallest amount.
+     * 
+     * @return minimum
+     * @throws NoSuchElementException
+     *             if there are no amounts
+     */
+    public Money getMin() {
+        assertNotEmpty();
+        return Money.fromMinor(min, currencyIndex);
+    }
+
+    /**
+     * Returns the largest amount.
+     * 
+     * @return maximum
+     * @throws NoSuchElementException
+     *             if there are no amounts
+     */
+    public Money getMax() {
+        assertNotEmpty();
+        return Money.fromMinor(max, currencyIndex);
+    }
+
+    /**
+     * Returns the mean in major currency with 16 significant digits.
+     * 
+     * @return mean
+     * @throws NoSuchElementException
+     *             if there are no amounts
+     */
+    public BigDecimal getMean() {
+        assertNotEmpty();
+        return getSum().getAmount().divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+    }
+
+    /**
+     * Returns an approximate quantile, rounded to minor units. The result is
+     * within the relative accuracy of the amount of rank q * (count - 1) and
+     * never outside minimum and maximum; the quantiles 0 and 1 are exact.
+     * 
+     * @param q
+     *            quantile between 0 and 1, 0.5 for the median
+     * 
+     * @return quantile
+     * @throws NoSuchElementException
+     *             if there are no amounts
+     */
+    public Money getQuantile(double q) {
+        if (!(q >= 0 && q <= 1))
+            throw new IllegalArgumentException("Invalid quantile: " + q);
+        assertNotEmpty();
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank == 0)
+            return Money.fromMinor(min, currencyIndex);
+        if (rank == count - 1)
+            return Money.fromMinor(max, currencyIndex);
+        long seen = 0;
+        long value = 0;
+        boolean found = false;
+        for (int i = negative.length - 1; i >= 0 && !found; i--) {
+            seen += negative[i];
+            if (seen > rank) {
+                value = -estimate(i);
+                found = true;
+            }
+        }
+        if (!found && (seen += zeros) > rank) {
+            value = 0;
+            found = true;
+        }
+        for (int i = 0; i < positive.length && !found; i++) {
+            seen += positive[i];
+            if (seen > rank) {
+                value = estimate(i);
+                found = true;
+            }
+        }
+        return Money.fromMinor(Math.max(min, Math.min(max, value)), currencyIndex);
+    }
+
+    /**
+     * Returns the relative accuracy of quantiles.
+     * 
+     * @return relative accuracy
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        if (count == 0)
+            return "AmountStatistics[" + currency + ", count=0]";
+        return "AmountStatistics[count=" + count + ", sum=" + getSum() + ", min=" + getMin() + ", max=" + getMax()
+                + "]";
+    }
+
+    /**
+     * Returns the bucket of a positive amount.
+     */
+    private int bucket(long amount) {
+        return (int) Math.ceil(Math.log(amount) / logGamma);
+    }
+
+    /**
+     * Returns the amount representing a bucket, which is within the
+     * relative accuracy of every amount in the bucket.
+     */
+    private long estimate(int bucket) {
+        double gamma = Math.exp(logGamma);
+        return Math.round(2 * Math.exp(bucket * logGamma) / (gamma + 1));
+    }
+
+    private void addOverflow(BigDecimal amount) {
+        overflow = overflow == null ? amount : overflow.add(amount);
+    }
+
+    private void assertNotEmpty() {
+        if (count == 0)
+            throw new NoSuchElementException("No amounts");
+    }
+}
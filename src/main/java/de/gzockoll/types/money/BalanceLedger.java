@@ -0,0 +1,381 @@
+package de.gzockoll.types.money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Balances of accounts in a memory mapped file.
+ * <p/>
+ * Each account has one currency, set by its first booking, and a balance
+ * in minor currency. Records are kept in an open addressing table with
+ * linear probing in the file, so balances stay off the heap and reopening
+ * a ledger maps the file again without reading it. The currency is stored
+ * as its ISO 4217 alphabetic code, since {@link CurrencyRegistry} indexes
+ * differ between JVMs and numeric codes are shared by some currencies.
+ * <p/>
+ * Bookings of one record are atomic: records are claimed and balances
+ * updated by compare and set on the mapped memory, so a ledger can be
+ * shared between threads. The capacity is fixed when the ledger is
+ * created. Changes reach the file when the operating system writes the
+ * pages back or on {@link #force()}.
+ */
+public final class BalanceLedger implements Closeable {
+
+    private static final long MAGIC = 0x4D4F4E45594C4447L;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_COUNT_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+
+    private static final int SLOT_SIZE = 24;
+    private static final int KEY_OFFSET = 0;
+    private static final int BALANCE_OFFSET = 8;
+    private static final int CURRENCY_OFFSET = 16;
+
+    /**
+     * Slots per mapped segment, 768 MB per segment.
+     */
+    private static final int SEGMENT_SHIFT = 25;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments;
+    private final long slotCount;
+    private final long maxSize;
+
+    /**
+     * Creates a new ledger file.
+     * 
+     * @param path
+     *            file, must not exist
+     * @param capacity
+     *            maximum number of accounts
+     * 
+     * @return ledger
+     * @throws IOException
+     *             if the file exists or cannot be written
+     */
+    public static BalanceLedger create(Path path, long capacity) throws IOException {
+        if (capacity <= 0 || capacity > 1L << 40)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        long slotCount = Long.highestOneBit(capacity * 4 / 3 + 1) << 1;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            LONGS.set(header, SLOT_COUNT_OFFSET, slotCount);
+            LONGS.set(header, SIZE_OFFSET, 0L);
+            BalanceLedger ledger = new BalanceLedger(channel, header, slotCount);
+            LONGS.setVolatile(header, 0, MAGIC);
+            ledger.force();
+            return ledger;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing ledger file.
+     * 
+     * @param path
+     *            file
+     * 
+     * @return ledger
+     * @throws IOException
+     *             if the file is not a ledger or cannot be read
+     */
+    public static BalanceLedger open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Not a balance ledger: " + path);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            long slotCount = (long) LONGS.get(header, SLOT_COUNT_OFFSET);
+            if ((long) LONGS.getVolatile(header, 0) != MAGIC || Long.bitCount(slotCount) != 1
+                    || channel.size() < HEADER_SIZE + slotCount * SLOT_SIZE)
+                throw new IOException("Not a balance ledger: " + path);
+            return new BalanceLedger(channel, header, slotCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private BalanceLedger(FileChannel channel, MappedByteBuffer header, long slotCount) throws IOException {
+        this.channel = channel;
+        this.header = header;
+        this.slotCount = slotCount;
+        maxSize = slotCount / 4 * 3;
+        long segmentSlots = Math.min(slotCount, 1L << SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[(int) (slotCount / segmentSlots)];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * segmentSlots * SLOT_SIZE,
+                    segmentSlots * SLOT_SIZE);
+    }
+
+    /**
+     * Adds an amount to the balance of an account. The first booking of an
+     * account sets its currency.
+     * 
+     * @param account
+     *            account id, not negative
+     * @param amount
+     *            amount
+     * 
+     * @return new balance
+     * @throws IllegalArgumentException
+     *             if the account has another currency
+     * @throws IllegalStateException
+     *             if the ledger is full
+     * @throws ArithmeticException
+     *             if the amount has more fraction digits than its currency
+     *             or the balance does not fit into a long
+     */
+    public Money credit(long account, Money amount) {
+        return book(account, amount, false);
+    }
+
+    /**
+     * Subtracts an amount from the balance of an account. The balance may
+     * become negative.
+     * 
+     * @param account
+     *            account id, not negative
+     * @param amount
+     *            amount
+     * 
+     * @return new balance
+     * @throws IllegalArgumentException
+     *             if the account has another currency
+     * @throws IllegalStateException
+     *             if the ledger is full
+     * @throws ArithmeticException
+     *             if the amount has more fraction digits than its currency
+     *             or the balance does not fit into a long
+     */
+    public Money debit(long account, Money amount) {
+        return book(account, amount, true);
+    }
+
+    /**
+     * Returns the balance of an account.
+     * 
+     * @param account
+     *            account id
+     * 
+     * @return balance, null if the account has no bookings
+     */
+    public Money balance(long account) {
+        if (account < 0)
+            return null;
+        long slot = find(account + 1, 0);
+        if (slot < 0)
+            return null;
+        MappedByteBuffer segment = segmentOf(slot);
+        int offset = offsetOf(slot);
+        int code = (int) INTS.getVolatile(segment, offset + CURRENCY_OFFSET);
+        if (code == 0)
+            return null;
+        return Money.fromMinor((long) LONGS.getVolatile(segment, offset + BALANCE_OFFSET), indexOfCode(code));
+    }
+
+    /**
+     * Passes all accounts with their balance to the consumer, in file order.
+     * Each balance is read atomically, but bookings during the scan may or
+     * may not be seen.
+     * 
+     * @param consumer
+     *            consumer
+     */
+    public void forEach(AccountBalanceConsumer consumer) {
+        long segmentSlots = slotCount / segments.length;
+        for (MappedByteBuffer segment : segments) {
+            for (long i = 0; i < segmentSlots; i++) {
+                int offset = (int) (i * SLOT_SIZE);
+                long key = (long) LONGS.getVolatile(segment, offset + KEY_OFFSET);
+                if (key == 0)
+                    continue;
+                int code = (int) INTS.getVolatile(segment, offset + CURRENCY_OFFSET);
+                if (code != 0)
+                    consumer.accept(key - 1, CurrencyRegistry.currencyAt(indexOfCode(code)),
+                            (long) LONGS.getVolatile(segment, offset + BALANCE_OFFSET));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of accounts, including accounts being added
+     * concurrently.
+     * 
+     * @return number of accounts
+     */
+    public long size() {
+        return (long) LONGS.getVolatile(header, SIZE_OFFSET);
+    }
+
+    /**
+     * Returns the maximum number of accounts.
+     * 
+     * @return maximum number of accounts
+     */
+    public long capacity() {
+        return maxSize;
+    }
+
+    /**
+     * Writes all changes to the file.
+     */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments)
+            segment.force();
+    }
+
+    /**
+     * Writes all changes and closes the file. The mapping is released when
+     * the ledger is garbage collected and must not be used after closing.
+     * 
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private Money book(long account, Money amount, boolean debit) {
+        if (account < 0)
+            throw new IllegalArgumentException("Invalid account: " + account);
+        int index = amount.currencyIndex();
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(index);
+        BigDecimal value = amount.getAmount();
+        long minor = MinorUnits.fitsMinor(value, fractionDigits) ? MinorUnits.toMinor(value, fractionDigits)
+                : value.movePointRight(fractionDigits).longValueExact();
+        if (debit)
+            minor = Math.negateExact(minor);
+        long slot = find(account + 1, CurrencyRegistry.alphabeticCodeAt(index) + 1);
+        MappedByteBuffer segment = segmentOf(slot);
+        int offset = offsetOf(slot) + BALANCE_OFFSET;
+        long balance;
+        long updated;
+        do {
+            balance = (long) LONGS.getVolatile(segment, offset);
+            updated = Math.addExact(balance, minor);
+        } while (!LONGS.compareAndSet(segment, offset, balance, updated));
+        return Money.fromMinor(updated, index);
+    }
+
+    /**
+     * Returns the slot of the key. With a currency code, a missing record is
+     * claimed and the currency is checked, otherwise -1 is returned for a
+     * missing record.
+     */
+    private long find(long key, int code) {
+        long mask = slotCount - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        long slot = (h ^ h >>> 32) & mask;
+        for (long probes = 0; probes < slotCount;) {
+            MappedByteBuffer segment = segmentOf(slot);
+            int offset = offsetOf(slot);
+            long current = (long) LONGS.getVolatile(segment, offset + KEY_OFFSET);
+            if (current == 0) {
+                if (code == 0)
+                    return -1;
+                reserve();
+                if (!LONGS.compareAndSet(segment, offset + KEY_OFFSET, 0L, key)) {
+                    LONGS.getAndAdd(header, SIZE_OFFSET, -1L);
+                    continue;
+                }
+                current = key;
+            }
+            if (current == key) {
+                if (code != 0)
+                    checkCurrency(segment, offset + CURRENCY_OFFSET, code);
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+            probes++;
+        }
+        if (code == 0)
+            return -1;
+        throw new IllegalStateException("Ledger full");
+    }
+
+    /**
+     * Counts a record before its slot is claimed, so that the size never
+     * exceeds {@link #capacity()}.
+     */
+    private void reserve() {
+        long size;
+        do {
+            size = size();
+            if (size >= maxSize)
+                throw new IllegalStateException("Ledger full");
+        } while (!LONGS.compareAndSet(header, SIZE_OFFSET, size, size + 1));
+    }
+
+    /**
+     * Returns the currency index of a stored currency code.
+     */
+    private static int indexOfCode(int code) {
+        int index = CurrencyRegistry.indexOfAlphabeticCode(code - 1);
+        if (index < 0)
+            throw new IllegalStateException("Unknown currency code: " + (code - 1));
+        return index;
+    }
+
+    /**
+     * Sets the currency of a new record or checks that of an existing one.
+     */
+    private static void checkCurrency(MappedByteBuffer segment, int offset, int code) {
+        int current = (int) INTS.getVolatile(segment, offset);
+        if (current == 0 && INTS.compareAndSet(segment, offset, 0, code))
+            return;
+        if (current == 0)
+            current = (int) INTS.getVolatile(segment, offset);
+        if (current != code)
+            throw new IllegalArgumentException("money math mismatch");
+    }
+
+    private MappedByteBuffer segmentOf(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)];
+    }
+
+    private static int offsetOf(long slot) {
+        return (int) (slot & (1L << SEGMENT_SHIFT) - 1) * SLOT_SIZE;
+    }
+
+    /**
+     * Receives the balance of an account.
+     */
+    public interface AccountBalanceConsumer {
+
+        /**
+         * Receives a balance.
+         * 
+         * @param account
+         *            account id
+         * @param currency
+         *            currency
+         * @param minor
+         *            balance in minor currency
+         */
+        void accept(long account, Currency currency, long minor);
+    }
+}
@@ -0,0 +1,212 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Converts money between currencies using the current
+ * {@link ExchangeRates}.
+ * <p/>
+ * The rates are replaced as a whole by {@link #setRates(ExchangeRates)};
+ * readers never lock and every conversion, including a batch, uses a single
+ * snapshot. Amounts are multiplied with the exact rate and rounded once to
+ * the fraction digits of the target currency, also for inverse and
+ * triangulated rates, which are exact ratios of the given rates.
+ * <p/>
+ * Batch conversions reduce the rate between minor units to a fraction of
+ * two longs once, e.g. 4 / 5 for an inverse rate of 1.25, and scale the
+ * amounts with {@link MinorArrays#scale(long[], long, long, RoundingMode, long[], int)}.
+ */
+public final class CurrencyConverter {
+
+    /**
+     * The current rates.
+     */
+    private final AtomicReference<ExchangeRates> rates;
+
+    /**
+     * Creates a converter.
+     * 
+     * @param rates
+     *            initial rates
+     */
+    public CurrencyConverter(ExchangeRates rates) {
+        this.rates = new AtomicReference<>(rates);
+    }
+
+    /**
+     * Returns the current rates.
+     * 
+     * @return rates
+     */
+    public ExchangeRates getRates() {
+        return rates.get();
+    }
+
+    /**
+     * Replaces the rates. Conversions running concurrently complete with the
+     * rates they started with.
+     * 
+     * @param rates
+     *            new rates
+     */
+    public void setRates(ExchangeRates rates) {
+        this.rates.set(rates);
+    }
+
+    /**
+     * Converts an amount.
+     * 
+     * @param value
+     *            amount
+     * @param to
+     *            target currency
+     * @param mode
+     *            rounding mode
+     * 
+     * @return amount in the target currency
+     * @throws IllegalArgumentException
+     *             if there is no rate or the target currency is invalid
+     */
+    public Money convert(Money value, Currency to, RoundingMode mode) {
+        int toIndex = CurrencyRegistry.indexOf(to);
+        BigDecimal[] ratio = ratioAt(rates.get(), value.currencyIndex(), toIndex);
+        BigDecimal amount = value.getAmount().multiply(ratio[0]).divide(ratio[1],
+                CurrencyRegistry.fractionDigitsAt(toIndex), mode);
+        return new Money(amount, to);
+    }
+
+    /**
+     * Converts amounts in minor currency.
+     * 
+     * @param minors
+     *            amounts in minor units of the source currency
+     * @param from
+     *            source currency
+     * @param to
+     *            target currency
+     * @param mode
+     *            rounding mode
+     * @param results
+     *            receives the amounts in minor units of the target currency,
+     *            may be minors
+     * @param length
+     *            number of amounts to convert
+     * 
+     * @throws IllegalArgumentException
+     *             if there is no rate
+     * @throws ArithmeticException
+     *             if a result does not fit into a long
+     */
+    public void convertMinor(long[] minors, Currency from, Currency to, RoundingMode mode, long[] results,
+            int length) {
+        int fromIndex = CurrencyRegistry.indexOf(from);
+        int toIndex = CurrencyRegistry.indexOf(to);
+        minorRate(rates.get(), fromIndex, toIndex).apply(minors, mode, results, length);
+    }
+
+    /**
+     * Converts all amounts of a column.
+     * 
+     * @param column
+     *            amounts in any currencies
+     * @param to
+     *            target currency
+     * @param mode
+     *            rounding mode
+     * 
+     * @return single currency column with the amounts in the target currency
+     * @throws IllegalArgumentException
+     *             if there is no rate for a currency of the column or the
+     *             target currency is invalid
+     * @throws ArithmeticException
+     *             if a result does not fit into a long
+     */
+    public MoneyColumn convert(MoneyColumn column, Currency to, RoundingMode mode) {
+        ExchangeRates snapshot = rates.get();
+        int toIndex = CurrencyRegistry.indexOf(to);
+        long[] results = column.toMinorArray();
+        if (column.isSingleCurrency()) {
+            if (results.length > 0)
+                minorRate(snapshot, column.currencyIndexAt(0), toIndex).apply(results, mode, results,
+                        results.length);
+            return MoneyColumn.of(results, to);
+        }
+        MinorRate[] minorRates = new MinorRate[CurrencyRegistry.size()];
+        for (int i = 0; i < results.length; i++) {
+            int fromIndex = column.currencyIndexAt(i);
+            if (minorRates[fromIndex] == null)
+                minorRates[fromIndex] = minorRate(snapshot, fromIndex, toIndex);
+            results[i] = minorRates[fromIndex].apply(results[i], mode);
+        }
+        return MoneyColumn.of(results, to);
+    }
+
+    /**
+     * Returns the rate converting minor units of one currency into minor
+     * units of another.
+     */
+    private static MinorRate minorRate(ExchangeRates snapshot, int from, int to) {
+        BigDecimal[] ratio = ratioAt(snapshot, from, to);
+        return new MinorRate(ratio[0].movePointRight(
+                CurrencyRegistry.fractionDigitsAt(to) - CurrencyRegistry.fractionDigitsAt(from)), ratio[1]);
+    }
+
+    private static BigDecimal[] ratioAt(ExchangeRates snapshot, int from, int to) {
+        BigDecimal[] ratio = snapshot.ratioAt(from, to);
+        if (ratio == null)
+            throw new IllegalArgumentException("No rate from " + CurrencyRegistry.currencyAt(from) + " to "
+                    + CurrencyRegistry.currencyAt(to));
+        return ratio;
+    }
+
+    /**
+     * A positive rate between minor units as a reduced fraction.
+     */
+    private static final class MinorRate {
+        private final BigDecimal numerator;
+        private final BigDecimal denominator;
+        private final long longNumerator;
+        private final long longDenominator;
+        private final boolean fast;
+
+        MinorRate(BigDecimal rateNumerator, BigDecimal rateDenominator) {
+            int scale = Math.max(0, Math.max(rateNumerator.scale(), rateDenominator.scale()));
+            BigInteger p = rateNumerator.setScale(scale).unscaledValue();
+            BigInteger q = rateDenominator.setScale(scale).unscaledValue();
+            BigInteger gcd = p.gcd(q);
+            p = p.divide(gcd);
+            q = q.divide(gcd);
+            this.numerator = new BigDecimal(p);
+            this.denominator = new BigDecimal(q);
+            this.fast = p.bitLength() < Long.SIZE && q.bitLength() < Long.SIZE;
+            this.longNumerator = p.longValue();
+            this.longDenominator = q.longValue();
+        }
+
+        long apply(long minor, RoundingMode mode) {
+            if (fast)
+                return MinorArrays.scale(minor, longNumerator, longDenominator, mode);
+            return applyExact(minor, mode);
+        }
+
+        void apply(long[] minors, RoundingMode mode, long[] results, int length) {
+            if (fast) {
+                MinorArrays.scale(minors, longNumerator, longDenominator, mode, results, length);
+                return;
+            }
+            for (int i = 0; i < length; i++)
+                results[i] = applyExact(minors[i], mode);
+        }
+
+        private long applyExact(long minor, RoundingMode mode) {
+            if (MoneyMetrics.isEnabled())
+                MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+            return BigDecimal.valueOf(minor).multiply(numerator).divide(denominator, 0, mode).longValueExact();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package de.gzockoll.types.money;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Interns currencies and assigns each a small, dense index. Indexes are
+ * stable for the lifetime of the JVM but not across JVMs, so they must not
+ * be persisted; use the ISO 4217 numeric code instead.
+ * <p/>
+ * The data Money needs per operation is looked up from ICU once per
+ * currency and then served from an array by index.
+ */
+public final class CurrencyRegistry {
+
+    /**
+     * Highest ISO 4217 numeric code.
+     */
+    private static final int MAX_NUMERIC_CODE = 999;
+
+    /**
+     * Number of packed alphabetic codes.
+     */
+    static final int ALPHABETIC_CODES = 26 * 26 * 26;
+
+    /**
+     * Highest amount in minor currency served from the cache of small
+     * values, configured by the system property
+     * <code>de.gzockoll.types.money.cache.minorHigh</code>.
+     */
+    static final int CACHE_MINOR_HIGH = Integer.getInteger("de.gzockoll.types.money.cache.minorHigh", 100);
+
+    /**
+     * Highest amount in whole major currency served from the cache of small
+     * values, configured by the system property
+     * <code>de.gzockoll.types.money.cache.majorHigh</code>.
+     */
+    static final int CACHE_MAJOR_HIGH = Integer.getInteger("de.gzockoll.types.money.cache.majorHigh", 100);
+
+    /**
+     * Indexes by currency code.
+     */
+    private static final ConcurrentMap<String, Integer> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Entries by index.
+     */
+    private static volatile Entry[] entries = new Entry[0];
+
+    private CurrencyRegistry() {
+    }
+
+    /**
+     * Returns the index of the currency, registering it if necessary.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return index of the currency
+     */
+    public static int indexOf(Currency currency) {
+        Integer index = indexes.get(currency.getCurrencyCode());
+        if (index != null)
+            return index;
+        return register(currency);
+    }
+
+    /**
+     * Returns the index of the currency if it is registered.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return index of the currency, -1 if it is not registered
+     */
+    static int registeredIndexOf(Currency currency) {
+        Integer index = indexes.get(currency.getCurrencyCode());
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the currency with the index.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return currency
+     * @throws IndexOutOfBoundsException
+     *             if no currency has this index
+     */
+    public static Currency currencyAt(int index) {
+        return entries[index].currency;
+    }
+
+    /**
+     * Returns the default fraction digits of the currency with the index.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return fraction digits
+     */
+    static int fractionDigitsAt(int index) {
+        return entries[index].fractionDigits;
+    }
+
+    /**
+     * Returns the number of minor units per major unit of the currency with
+     * the index.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return cent factor
+     */
+    static long centFactorAt(int index) {
+        return entries[index].centFactor;
+    }
+
+    /**
+     * Returns the cached instances for the amounts 0 to
+     * {@link #CACHE_MINOR_HIGH} in minor currency. Slots are filled on
+     * first use.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return cached instances by amount in minor currency
+     */
+    static Money[] minorValuesAt(int index) {
+        return entries[index].minorValues;
+    }
+
+    /**
+     * Returns the cached instances for the amounts 0 to
+     * {@link #CACHE_MAJOR_HIGH} in whole major currency. Slots are filled on
+     * first use.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return cached instances by amount in major currency
+     */
+    static Money[] majorValuesAt(int index) {
+        return entries[index].majorValues;
+    }
+
+    /**
+     * Returns the ISO 4217 numeric code of the currency with the index.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return numeric code, 0 if the currency has none
+     */
+    public static int numericCodeAt(int index) {
+        return entries[index].numericCode;
+    }
+
+    /**
+     * Returns the index of the currency with the ISO 4217 numeric code. If
+     * several currencies share the code, the one valid now is preferred.
+     * 
+     * @param numericCode
+     *            numeric code
+     * 
+     * @return index of the currency, -1 if the code is unknown
+     */
+    public static int indexOfNumericCode(int numericCode) {
+        if (numericCode <= 0 || numericCode > MAX_NUMERIC_CODE)
+            return -1;
+        return NumericCodes.INDEXES[numericCode];
+    }
+
+    /**
+     * Returns the alphabetic code of the currency with the index packed as
+     * base 26 number, a compact and unambiguous persistent form.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return packed code below {@link #ALPHABETIC_CODES}
+     * @throws IllegalArgumentException
+     *             if the code is not three letters A to Z
+     */
+    static int alphabeticCodeAt(int index) {
+        int code = entries[index].alphabeticCode;
+        if (code < 0)
+            throw new IllegalArgumentException("Invalid currency: " + entries[index].currency);
+        return code;
+    }
+
+    /**
+     * Returns the index of the currency with the packed alphabetic code. Only
+     * currencies known to ICU are registered, so decoding untrusted input
+     * cannot fill the registry with arbitrary codes.
+     * 
+     * @param alphabeticCode
+     *            code packed by {@link #alphabeticCodeAt(int)}
+     * 
+     * @return index of the currency, -1 if the code is out of range or no
+     *         known currency
+     */
+    static int indexOfAlphabeticCode(int alphabeticCode) {
+        if (alphabeticCode < 0 || alphabeticCode >= ALPHABETIC_CODES)
+            return -1;
+        int index = AlphabeticCodes.INDEXES.get(alphabeticCode) - 1;
+        if (index >= 0 || !AlphabeticCodes.KNOWN.get(alphabeticCode))
+            return index;
+        char[] code = new char[3];
+        for (int i = 2, value = alphabeticCode; i >= 0; i--, value /= 26)
+            code[i] = (char) ('A' + value % 26);
+        index = indexOf(Currency.getInstance(new String(code)));
+        AlphabeticCodes.INDEXES.set(alphabeticCode, index + 1);
+        return index;
+    }
+
+    /**
+     * Returns the number of registered currencies.
+     * 
+     * @return number of registered currencies
+     */
+    public static int size() {
+        return entries.length;
+    }
+
+    private static synchronized int register(Currency currency) {
+        Integer index = indexes.get(currency.getCurrencyCode());
+        if (index != null)
+            return index;
+        Entry[] grown = Arrays.copyOf(entries, entries.length + 1);
+        grown[entries.length] = new Entry(currency);
+        entries = grown;
+        indexes.put(currency.getCurrencyCode(), entries.length - 1);
+        return entries.length - 1;
+    }
+
+    /**
+     * Precomputed data of a currency.
+     */
+    private static final class Entry {
+        private final Currency currency;
+        private final int fractionDigits;
+        private final long centFactor;
+        private final int numericCode;
+        private final int alphabeticCode;
+        private final Money[] minorValues = new Money[Math.max(CACHE_MINOR_HIGH + 1, 1)];
+        private final Money[] majorValues = new Money[Math.max(CACHE_MAJOR_HIGH + 1, 1)];
+
+        private Entry(Currency currency) {
+            this.currency = currency;
+            this.fractionDigits = currency.getDefaultFractionDigits();
+            this.centFactor = MinorUnits.powerOfTen(fractionDigits);
+            this.numericCode = currency.getNumericCode();
+            this.alphabeticCode = pack(currency.getCurrencyCode());
+        }
+
+        private static int pack(String code) {
+            if (code.length() != 3)
+                return -1;
+            int packed = 0;
+            for (int i = 0; i < 3; i++) {
+                char c = code.charAt(i);
+                if (c < 'A' || c > 'Z')
+                    return -1;
+                packed = packed * 26 + c - 'A';
+            }
+            return packed;
+        }
+    }
+
+    /**
+     * Indexes plus one by packed alphabetic code, filled on first use, and
+     * the codes of the currencies known to ICU.
+     */
+    private static final class AlphabeticCodes {
+        private static final AtomicIntegerArray INDEXES = new AtomicIntegerArray(ALPHABETIC_CODES);
+        private static final BitSet KNOWN = new BitSet(ALPHABETIC_CODES);
+
+        static {
+            for (Currency currency : Currency.getAvailableCurrencies()) {
+                int code = Entry.pack(currency.getCurrencyCode());
+                if (code >= 0)
+                    KNOWN.set(code);
+            }
+        }
+    }
+
+    /**
+     * Indexes by numeric code, built on first use.
+     */
+    private static final class NumericCodes {
+        private static final int[] INDEXES = new int[MAX_NUMERIC_CODE + 1];
+
+        static {
+            Arrays.fill(INDEXES, -1);
+            for (Currency currency : Currency.getAvailableCurrencies()) {
+                int code = currency.getNumericCode();
+                if (code <= 0 || code > MAX_NUMERIC_CODE)
+                    continue;
+                if (INDEXES[code] < 0 || Money.isCurrencyValid(currency))
+                    INDEXES[code] = indexOf(currency);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package de.gzockoll.types.money;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * {@link AmountStatistics} per currency, indexed by {@link CurrencyRegistry}
+ * index. Instances are not thread-safe; collect per thread and
+ * {@link #combine(CurrencyStatistics)} the results.
+ */
+public final class CurrencyStatistics {
+
+    private final double relativeAccuracy;
+
+    /**
+     * Statistics by currency index, null for currencies without amounts.
+     */
+    private AmountStatistics[] statistics = new AmountStatistics[8];
+
+    /**
+     * Creates empty statistics with {@link AmountStatistics#DEFAULT_ACCURACY}.
+     */
+    public CurrencyStatistics() {
+        this(AmountStatistics.DEFAULT_ACCURACY);
+    }
+
+    /**
+     * Creates empty statistics.
+     * 
+     * @param relativeAccuracy
+     *            relative accuracy of quantiles, between 0 and 1
+     * @throws IllegalArgumentException
+     *             if the accuracy is out of range
+     */
+    public CurrencyStatistics(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1))
+            throw new IllegalArgumentException("Invalid accuracy: " + relativeAccuracy);
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    /**
+     * Adds an amount.
+     * 
+     * @param value
+     *            amount
+     * @throws ArithmeticException
+     *             if the amount has more fraction digits than its currency
+     */
+    public void accept(Money value) {
+        statisticsAt(value.currencyIndex()).accept(value);
+    }
+
+    /**
+     * Adds an amount in minor currency.
+     * 
+     * @param minor
+     *            amount in minor currency
+     * @param currency
+     *            currency
+     */
+    public void accept(long minor, Currency currency) {
+        if (!Money.isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+        statisticsAt(CurrencyRegistry.indexOf(currency)).accept(minor);
+    }
+
+    /**
+     * Adds the amounts of other statistics.
+     * 
+     * @param other
+     *            statistics with the same accuracy
+     * 
+     * @return this instance
+     */
+    public CurrencyStatistics combine(CurrencyStatistics other) {
+        for (int i = 0; i < other.statistics.length; i++)
+            if (other.statistics[i] != null)
+                statisticsAt(i).combine(other.statistics[i]);
+        return this;
+    }
+
+    /**
+     * Returns the statistics of a currency.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return statistics, null if there are no amounts of the currency
+     */
+    public AmountStatistics get(Currency currency) {
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        return index >= 0 && index < statistics.length ? statistics[index] : null;
+    }
+
+    /**
+     * Returns the statistics of all currencies with amounts, ordered by
+     * currency index.
+     * 
+     * @return statistics by currency
+     */
+    public Map<Currency, AmountStatistics> toMap() {
+        Map<Currency, AmountStatistics> result = new LinkedHashMap<>();
+        for (AmountStatistics s : statistics)
+            if (s != null)
+                result.put(s.getCurrency(), s);
+        return result;
+    }
+
+    private AmountStatistics statisticsAt(int index) {
+        if (index >= statistics.length)
+            statistics = Arrays.copyOf(statistics, Math.max(index + 1, statistics.length * 2));
+        if (statistics[index] == null)
+            statistics[index] = new AmountStatistics(CurrencyRegistry.currencyAt(index), relativeAccuracy);
+        return statistics[index];
+    }
+}
@@ -0,0 +1,166 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Mutable per currency totals indexed by {@link CurrencyRegistry} index.
+ * <p/>
+ * Totals are kept in minor units; amounts with more fraction digits than
+ * their currency and sums exceeding a long are kept as BigDecimal. Instances
+ * are not thread-safe.
+ */
+final class CurrencyTotals {
+
+    /**
+     * Sums in minor currency by currency index.
+     */
+    private long[] minors = new long[8];
+
+    /**
+     * Number of amounts by currency index.
+     */
+    private long[] counts = new long[8];
+
+    /**
+     * Sums in major currency which do not fit into minors, null until needed.
+     */
+    private BigDecimal[] exact;
+
+    /**
+     * Adds an amount.
+     * 
+     * @param money
+     *            amount
+     */
+    void add(Money money) {
+        int index = money.currencyIndex();
+        BigDecimal amount = money.getAmount();
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(index);
+        if (MinorUnits.fitsMinor(amount, fractionDigits)) {
+            add(index, MinorUnits.toMinor(amount, fractionDigits));
+        } else {
+            ensureCapacity(index);
+            counts[index]++;
+            addExact(index, amount);
+        }
+    }
+
+    /**
+     * Adds an amount in minor currency.
+     * 
+     * @param index
+     *            currency index
+     * @param minor
+     *            amount in minor currency
+     */
+    void add(int index, long minor) {
+        ensureCapacity(index);
+        counts[index]++;
+        addMinor(index, minor);
+    }
+
+    /**
+     * Adds all totals of other to this instance.
+     * 
+     * @param other
+     *            totals to add
+     * 
+     * @return this instance
+     */
+    CurrencyTotals addAll(CurrencyTotals other) {
+        ensureCapacity(other.minors.length - 1);
+        for (int i = 0; i < other.minors.length; i++) {
+            counts[i] += other.counts[i];
+            addMinor(i, other.minors[i]);
+            if (other.exact != null && other.exact[i] != null)
+                addExact(i, other.exact[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of amounts added for the currency index.
+     * 
+     * @param index
+     *            currency index
+     * 
+     * @return number of amounts
+     */
+    long count(int index) {
+        return index < counts.length ? counts[index] : 0;
+    }
+
+    /**
+     * Returns the number of amounts added for all currencies.
+     * 
+     * @return number of amounts
+     */
+    long count() {
+        long count = 0;
+        for (long c : counts)
+            count += c;
+        return count;
+    }
+
+    /**
+     * Returns the total for the currency index.
+     * 
+     * @param index
+     *            currency index
+     * 
+     * @return total
+     */
+    Money total(int index) {
+        long minor = index < minors.length ? minors[index] : 0;
+        if (exact == null || index >= exact.length || exact[index] == null)
+            return Money.fromMinor(minor, index);
+        return new Money(exact[index].add(BigDecimal.valueOf(minor, CurrencyRegistry.fractionDigitsAt(index))),
+                CurrencyRegistry.currencyAt(index));
+    }
+
+    /**
+     * Returns the totals of all currencies with at least one amount, ordered
+     * by currency index.
+     * 
+     * @return totals by currency
+     */
+    Map<Currency, Money> toMap() {
+        Map<Currency, Money> result = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++)
+            if (counts[i] > 0)
+                result.put(CurrencyRegistry.currencyAt(i), total(i));
+        return result;
+    }
+
+    private void addMinor(int index, long minor) {
+        long sum = minors[index] + minor;
+        if (((minors[index] ^ sum) & (minor ^ sum)) < 0) {
+            addExact(index, BigDecimal.valueOf(minor, CurrencyRegistry.fractionDigitsAt(index)));
+            return;
+        }
+        minors[index] = sum;
+    }
+
+    private void addExact(int index, BigDecimal amount) {
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+        if (exact == null)
+            exact = new BigDecimal[minors.length];
+        exact[index] = exact[index] == null ? amount : exact[index].add(amount);
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < minors.length)
+            return;
+        int length = Math.max(index + 1, minors.length * 2);
+        minors = Arrays.copyOf(minors, length);
+        counts = Arrays.copyOf(counts, length);
+        if (exact != null)
+            exact = Arrays.copyOf(exact, length);
+    }
+}
@@ -0,0 +1,69 @@
+package de.gzockoll.types.money;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Interval;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Caches the validity of currencies at the current time.
+ * <p/>
+ * ICU only knows validity ranges with day resolution (UTC), so a result is
+ * kept until the current UTC day changes and the currency is checked again.
+ */
+final class CurrencyValidityCache {
+
+    /**
+     * Length of a time bucket.
+     */
+    private static final long BUCKET_MILLIS = DateTimeConstants.MILLIS_PER_DAY;
+
+    /**
+     * Cached results by currency code.
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Determines if the currency is valid now.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return true if currency is valid
+     */
+    boolean isValid(Currency currency) {
+        long now = DateTimeUtils.currentTimeMillis();
+        long bucket = now / BUCKET_MILLIS;
+        String code = currency.getCurrencyCode();
+        Entry entry = entries.get(code);
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.VALIDATIONS);
+        if (entry == null || entry.bucket != bucket) {
+            MoneyEvents.ValidationMiss event = MoneyEvents.beginValidationMiss();
+            entry = new Entry(bucket, Money.isCurrencyValid(currency, new Interval(now, now)));
+            entries.put(code, entry);
+            if (event != null)
+                event.end(code, entry.valid);
+        } else if (MoneyMetrics.isEnabled()) {
+            MoneyMetrics.increment(MoneyMetrics.Counter.VALIDATION_CACHE_HITS);
+        }
+        return entry.valid;
+    }
+
+    /**
+     * A cached result for one time bucket.
+     */
+    private static final class Entry {
+        private final long bucket;
+        private final boolean valid;
+
+        private Entry(long bucket, boolean valid) {
+            this.bucket = bucket;
+            this.valid = valid;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package de.gzockoll.types.money;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.Interval;
+
+import com.ibm.icu.text.CurrencyMetaInfo;
+import com.ibm.icu.text.CurrencyMetaInfo.CurrencyFilter;
+import com.ibm.icu.text.CurrencyMetaInfo.CurrencyInfo;
+import com.ibm.icu.util.Currency;
+
+/**
+ * Answers if a currency was in use at an instant or during an interval.
+ * <p/>
+ * The ranges of use of a currency in all regions are loaded from ICU once,
+ * merged and kept as sorted epoch milliseconds by {@link CurrencyRegistry}
+ * index, so a check is a binary search. Checks never register a currency:
+ * the ranges of currencies not in the registry are cached by code, and
+ * only for codes known to ICU. Bounds are inclusive like those of
+ * {@link Currency#isAvailable(String, java.util.Date, java.util.Date)},
+ * whose results are matched.
+ */
+public final class CurrencyValidityIndex {
+
+    /**
+     * No ranges, for currencies unknown to ICU.
+     */
+    private static final long[] NONE = new long[0];
+
+    /**
+     * Ranges by currency index, null until loaded. Each array holds the
+     * start at even and the end at odd positions of disjoint ranges
+     * ordered by start.
+     */
+    private static volatile long[][] ranges = new long[0][];
+
+    /**
+     * Ranges of currencies known to ICU which are not registered, by code.
+     */
+    private static final ConcurrentMap<String, long[]> unregistered = new ConcurrentHashMap<>();
+
+    private CurrencyValidityIndex() {
+    }
+
+    /**
+     * Determines if the currency was in use at the instant.
+     * 
+     * @param currency
+     *            currency
+     * @param instant
+     *            epoch milliseconds
+     * 
+     * @return true if currency is valid
+     */
+    public static boolean isValid(Currency currency, long instant) {
+        return overlaps(rangesOf(currency), instant, instant);
+    }
+
+    /**
+     * Determines if the currency was in use at some time of the interval,
+     * including its end.
+     * 
+     * @param currency
+     *            currency
+     * @param interval
+     *            interval
+     * 
+     * @return true if currency is valid
+     */
+    public static boolean isValid(Currency currency, Interval interval) {
+        return overlaps(rangesOf(currency), interval.getStartMillis(), interval.getEndMillis());
+    }
+
+    /**
+     * Validates pairs of currency and instant.
+     * 
+     * @param currencies
+     *            currencies
+     * @param instants
+     *            epoch milliseconds
+     * @param results
+     *            receives true for a valid pair
+     * @param length
+     *            number of pairs
+     * 
+     * @return number of invalid pairs
+     */
+    public static int validate(Currency[] currencies, long[] instants, boolean[] results, int length) {
+        int invalid = 0;
+        Currency currency = null;
+        long[] currencyRanges = NONE;
+        for (int i = 0; i < length; i++) {
+            if (currencies[i] != currency) {
+                currency = currencies[i];
+                currencyRanges = rangesOf(currency);
+            }
+            results[i] = overlaps(currencyRanges, instants[i], instants[i]);
+            if (!results[i])
+                invalid++;
+        }
+        return invalid;
+    }
+
+    /**
+     * Validates the currencies of a column, each at the instant with the
+     * same index.
+     * 
+     * @param column
+     *            column
+     * @param instants
+     *            epoch milliseconds, one per amount
+     * @param results
+     *            receives true for a valid currency, one per amount
+     * 
+     * @return number of invalid currencies
+     */
+    public static int validate(MoneyColumn column, long[] instants, boolean[] results) {
+        int invalid = 0;
+        int currencyIndex = -1;
+        long[] currencyRanges = NONE;
+        for (int i = 0; i < column.size(); i++) {
+            int index = column.currencyIndexAt(i);
+            if (index != currencyIndex) {
+                currencyIndex = index;
+                currencyRanges = rangesAt(index);
+            }
+            results[i] = overlaps(currencyRanges, instants[i], instants[i]);
+            if (!results[i])
+                invalid++;
+        }
+        return invalid;
+    }
+
+    /**
+     * Determines if one of the ranges overlaps start to end.
+     */
+    private static boolean overlaps(long[] currencyRanges, long start, long end) {
+        int low = 0;
+        int high = currencyRanges.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (currencyRanges[2 * mid] <= end)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return high >= 0 && currencyRanges[2 * high + 1] >= start;
+    }
+
+    /**
+     * Returns the ranges of the currency without registering it.
+     */
+    private static long[] rangesOf(Currency currency) {
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        if (index >= 0)
+            return rangesAt(index);
+        String code = currency.getCurrencyCode();
+        long[] currencyRanges = unregistered.get(code);
+        if (currencyRanges != null)
+            return currencyRanges;
+        currencyRanges = loadRanges(code);
+        if (currencyRanges.length > 0)
+            unregistered.putIfAbsent(code, currencyRanges);
+        return currencyRanges;
+    }
+
+    /**
+     * Returns the ranges of the currency index, loading them if necessary.
+     */
+    private static long[] rangesAt(int index) {
+        long[][] current = ranges;
+        if (index < current.length && current[index] != null)
+            return current[index];
+        return load(index);
+    }
+
+    private static synchronized long[] load(int index) {
+        long[][] current = ranges;
+        if (index < current.length && current[index] != null)
+            return current[index];
+        long[] loaded = loadRanges(CurrencyRegistry.currencyAt(index).getCurrencyCode());
+        long[][] grown = Arrays.copyOf(current, Math.max(current.length, CurrencyRegistry.size()));
+        grown[index] = loaded;
+        ranges = grown;
+        return loaded;
+    }
+
+    /**
+     * Loads and merges the ranges of the currency from ICU.
+     */
+    private static long[] loadRanges(String code) {
+        List<CurrencyInfo> infos = CurrencyMetaInfo.getInstance().currencyInfo(CurrencyFilter.onCurrency(code));
+        if (infos.isEmpty())
+            return NONE;
+        long[][] sorted = new long[infos.size()][];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = new long[] { infos.get(i).from, infos.get(i).to };
+        Arrays.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+        long[] merged = new long[sorted.length * 2];
+        int n = 0;
+        for (long[] range : sorted) {
+            if (n > 0 && (range[0] <= merged[n - 1] || merged[n - 1] != Long.MAX_VALUE
+                    && range[0] == merged[n - 1] + 1)) {
+                merged[n - 1] = Math.max(merged[n - 1], range[1]);
+            } else {
+                merged[n++] = range[0];
+                merged[n++] = range[1];
+            }
+        }
+        return Arrays.copyOf(merged, n);
+    }
+}
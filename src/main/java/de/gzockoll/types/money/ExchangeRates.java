@@ -0,0 +1,262 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * An immutable snapshot of exchange rates.
+ * <p/>
+ * Rates are held in a table indexed by the {@link CurrencyRegistry} indexes
+ * of the source and target currency. A rate missing from the table is
+ * derived from the inverse rate or triangulated through the pivot currency,
+ * and the derived rate is cached in the snapshot. A derived rate is kept as
+ * the exact ratio of given rates, so that conversions round only once;
+ * {@link #getRate(Currency, Currency)} returns it rounded with
+ * {@link MathContext#DECIMAL128} if it is not a finite decimal.
+ */
+public final class ExchangeRates {
+
+    /**
+     * Context for rates which are not finite decimals.
+     */
+    private static final MathContext INVERSE = MathContext.DECIMAL128;
+
+    /**
+     * Ratio of the rate between the same currency.
+     */
+    private static final BigDecimal[] IDENTITY = { BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE };
+
+    /**
+     * Number of currency indexes covered by the table.
+     */
+    private final int size;
+
+    /**
+     * Index of the pivot currency.
+     */
+    private final int pivotIndex;
+
+    /**
+     * Rates as given by index from * size + to, null if not given.
+     */
+    private final BigDecimal[] direct;
+
+    /**
+     * Given and derived rates by index from * size + to as numerator,
+     * denominator and rate, null until computed.
+     */
+    private final AtomicReferenceArray<BigDecimal[]> derived;
+
+    /**
+     * Returns a new builder.
+     * 
+     * @param pivot
+     *            currency through which missing rates are triangulated
+     * 
+     * @return builder
+     */
+    public static Builder builder(Currency pivot) {
+        return new Builder(CurrencyRegistry.indexOf(pivot));
+    }
+
+    private ExchangeRates(int size, int pivotIndex, BigDecimal[] direct) {
+        this.size = size;
+        this.pivotIndex = pivotIndex;
+        this.direct = direct;
+        this.derived = new AtomicReferenceArray<>(direct.length);
+        for (int i = 0; i < direct.length; i++)
+            if (direct[i] != null)
+                derived.set(i, ratio(direct[i], BigDecimal.ONE));
+    }
+
+    /**
+     * Returns the pivot currency.
+     * 
+     * @return pivot currency
+     */
+    public Currency getPivot() {
+        return CurrencyRegistry.currencyAt(pivotIndex);
+    }
+
+    /**
+     * Returns the rate from one currency to another, i.e. the amount of the
+     * target currency for one unit of the source currency.
+     * 
+     * @param from
+     *            source currency
+     * @param to
+     *            target currency
+     * 
+     * @return rate
+     * @throws IllegalArgumentException
+     *             if there is no rate between the currencies
+     */
+    public BigDecimal getRate(Currency from, Currency to) {
+        BigDecimal rate = rateOf(from, to);
+        if (rate == null)
+            throw new IllegalArgumentException("No rate from " + from + " to " + to);
+        return rate;
+    }
+
+    /**
+     * Determines if there is a rate from one currency to another.
+     * 
+     * @param from
+     *            source currency
+     * @param to
+     *            target currency
+     * 
+     * @return true if {@link #getRate(Currency, Currency)} succeeds
+     */
+    public boolean hasRate(Currency from, Currency to) {
+        return rateOf(from, to) != null;
+    }
+
+    /**
+     * Returns the rate between currencies without registering them.
+     */
+    private BigDecimal rateOf(Currency from, Currency to) {
+        if (from.equals(to))
+            return BigDecimal.ONE;
+        int fromIndex = CurrencyRegistry.registeredIndexOf(from);
+        int toIndex = CurrencyRegistry.registeredIndexOf(to);
+        return fromIndex < 0 || toIndex < 0 ? null : rateAt(fromIndex, toIndex);
+    }
+
+    /**
+     * Returns the rate between currency indexes.
+     * 
+     * @param from
+     *            source currency index
+     * @param to
+     *            target currency index
+     * 
+     * @return rate, null if there is none
+     */
+    BigDecimal rateAt(int from, int to) {
+        if (from == to)
+            return BigDecimal.ONE;
+        BigDecimal[] ratio = ratioAt(from, to);
+        return ratio == null ? null : ratio[2];
+    }
+
+    /**
+     * Returns the exact rate between currency indexes as a ratio.
+     * 
+     * @param from
+     *            source currency index
+     * @param to
+     *            target currency index
+     * 
+     * @return numerator, denominator and {@link #rateAt(int, int)}, null if
+     *         there is no rate; must not be modified
+     */
+    BigDecimal[] ratioAt(int from, int to) {
+        if (from == to)
+            return IDENTITY;
+        if (from >= size || to >= size)
+            return null;
+        int index = from * size + to;
+        BigDecimal[] ratio = derived.get(index);
+        if (ratio == null) {
+            ratio = derive(from, to);
+            if (ratio == null)
+                return null;
+            derived.lazySet(index, ratio);
+        }
+        return ratio;
+    }
+
+    private BigDecimal[] derive(int from, int to) {
+        BigDecimal[] ratio = leg(from, to);
+        if (ratio != null)
+            return ratio;
+        BigDecimal[] toPivot = leg(from, pivotIndex);
+        BigDecimal[] fromPivot = leg(pivotIndex, to);
+        if (toPivot == null || fromPivot == null)
+            return null;
+        return ratio(toPivot[0].multiply(fromPivot[0]), toPivot[1].multiply(fromPivot[1]));
+    }
+
+    /**
+     * Returns the given rate or the inverse of the given opposite rate.
+     */
+    private BigDecimal[] leg(int from, int to) {
+        if (from == to)
+            return ratio(BigDecimal.ONE, BigDecimal.ONE);
+        BigDecimal rate = direct[from * size + to];
+        if (rate != null)
+            return ratio(rate, BigDecimal.ONE);
+        BigDecimal inverse = direct[to * size + from];
+        return inverse == null ? null : ratio(BigDecimal.ONE, inverse);
+    }
+
+    private static BigDecimal[] ratio(BigDecimal numerator, BigDecimal denominator) {
+        BigDecimal rate = denominator.equals(BigDecimal.ONE) ? numerator : numerator.divide(denominator, INVERSE);
+        return new BigDecimal[] { numerator, denominator, rate };
+    }
+
+    /**
+     * Collects rates for a snapshot. Builders are not thread-safe.
+     */
+    public static final class Builder {
+        private final int pivotIndex;
+        private int[] froms = new int[16];
+        private int[] tos = new int[16];
+        private BigDecimal[] rates = new BigDecimal[16];
+        private int count;
+
+        private Builder(int pivotIndex) {
+            this.pivotIndex = pivotIndex;
+        }
+
+        /**
+         * Sets the rate from one currency to another. A later rate for the
+         * same currencies replaces an earlier one.
+         * 
+         * @param from
+         *            source currency
+         * @param to
+         *            target currency
+         * @param rate
+         *            amount of the target currency for one unit of the source
+         *            currency
+         * 
+         * @return this builder
+         * @throws IllegalArgumentException
+         *             if the rate is not positive
+         */
+        public Builder rate(Currency from, Currency to, BigDecimal rate) {
+            if (rate.signum() <= 0)
+                throw new IllegalArgumentException("Invalid rate: " + rate);
+            if (count == rates.length) {
+                froms = Arrays.copyOf(froms, count * 2);
+                tos = Arrays.copyOf(tos, count * 2);
+                rates = Arrays.copyOf(rates, count * 2);
+            }
+            froms[count] = CurrencyRegistry.indexOf(from);
+            tos[count] = CurrencyRegistry.indexOf(to);
+            rates[count++] = rate;
+            return this;
+        }
+
+        /**
+         * Builds the snapshot.
+         * 
+         * @return rates
+         */
+        public ExchangeRates build() {
+            int size = pivotIndex + 1;
+            for (int i = 0; i < count; i++)
+                size = Math.max(size, Math.max(froms[i], tos[i]) + 1);
+            BigDecimal[] direct = new BigDecimal[size * size];
+            for (int i = 0; i < count; i++)
+                direct[froms[i] * size + tos[i]] = rates[i];
+            return new ExchangeRates(size, pivotIndex, direct);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * The n-th power of a factor, applied to amounts with a single final
+ * rounding.
+ * <p/>
+ * The power is computed by exponentiation by squaring with bounded
+ * precision. Each rounding has a relative error of at most half an ulp and
+ * squaring doubles the error of its operand, so the relative error of the
+ * result stays below (2n + 2) ulps. If the rounded result of the lower and
+ * upper bound of the true value differs, the amount is multiplied with the
+ * exact power instead. Results are therefore identical to multiplying with
+ * the factor n times and rounding once.
+ */
+final class FactorPower {
+
+    /**
+     * Digits computed beyond the digits of the rounded result.
+     */
+    private static final int GUARD_DIGITS = 8;
+
+    /**
+     * Context for the error bound.
+     */
+    private static final MathContext BOUND = new MathContext(4, RoundingMode.UP);
+
+    private final BigDecimal factor;
+    private final int n;
+
+    /**
+     * Context of the approximation, null if the exact power is used.
+     */
+    private final MathContext context;
+
+    /**
+     * Approximated power, null if the exact power is used.
+     */
+    private final BigDecimal approximation;
+
+    /**
+     * Relative error bound of the approximated product.
+     */
+    private final BigDecimal relativeError;
+
+    /**
+     * Exact power, null until needed.
+     */
+    private BigDecimal exact;
+
+    /**
+     * Creates the power for amounts up to a magnitude.
+     * 
+     * @param factor
+     *            factor
+     * @param n
+     *            exponent, not negative
+     * @param amountDigits
+     *            maximum number of integer digits of the amounts, i.e.
+     *            precision minus scale
+     * @param scale
+     *            scale of the results
+     */
+    FactorPower(BigDecimal factor, int n, int amountDigits, int scale) {
+        if (n < 0)
+            throw new IllegalArgumentException("Invalid exponent: " + n);
+        this.factor = factor;
+        this.n = n;
+        double digits = amountDigits + n * Math.log10(factor.abs().doubleValue());
+        if (n < 2 || Double.isNaN(digits) || Math.abs(digits) > 1e6) {
+            context = null;
+            approximation = null;
+            relativeError = null;
+            exact = factor.pow(n);
+            return;
+        }
+        int precision = Math.max((int) Math.ceil(digits), 0) + scale + String.valueOf(n).length() + GUARD_DIGITS;
+        context = new MathContext(precision, RoundingMode.HALF_EVEN);
+        approximation = pow(factor, n, context);
+        relativeError = BigDecimal.valueOf(2L * n + 2).scaleByPowerOfTen(1 - precision);
+    }
+
+    /**
+     * Computes the power by squaring, rounding every product.
+     * 
+     * @param factor
+     *            factor
+     * @param n
+     *            exponent, not negative
+     * @param context
+     *            context of every product
+     * 
+     * @return power
+     */
+    static BigDecimal pow(BigDecimal factor, int n, MathContext context) {
+        BigDecimal result = BigDecimal.ONE;
+        BigDecimal base = factor;
+        for (int e = n; e > 0; e >>= 1) {
+            if ((e & 1) != 0)
+                result = result.multiply(base, context);
+            if (e > 1)
+                base = base.multiply(base, context);
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies the amount with the power and rounds to the scale.
+     * 
+     * @param amount
+     *            amount
+     * @param scale
+     *            scale of the result
+     * @param mode
+     *            rounding mode
+     * 
+     * @return rounded product
+     */
+    BigDecimal apply(BigDecimal amount, int scale, RoundingMode mode) {
+        if (approximation != null) {
+            BigDecimal product = amount.multiply(approximation, context);
+            BigDecimal error = product.abs().multiply(relativeError, BOUND);
+            BigDecimal low = product.subtract(error).setScale(scale, mode);
+            if (low.equals(product.add(error).setScale(scale, mode)))
+                return low;
+        }
+        if (approximation != null && MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+        if (exact == null)
+            exact = factor.pow(n);
+        return amount.multiply(exact).setScale(scale, mode);
+    }
+}
@@ -0,0 +1,204 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * A money value stored as a long of minor currency units.
+ * <p/>
+ * All arithmetic is exact; an {@link ArithmeticException} is thrown if a
+ * result does not fit into a long.
+ */
+public final class FastMoney {
+
+    /**
+     * The amount in minor currency.
+     */
+    private final long minor;
+
+    /**
+     * The index of the currency in the {@link CurrencyRegistry}.
+     */
+    private final int currencyIndex;
+
+    /**
+     * Creates an instance with minor currency value amount.
+     * 
+     * @param amount
+     *            minor currency value
+     * @param currency
+     *            currency
+     * 
+     * @return FastMoney instance
+     * @throws IllegalArgumentException
+     *             if currency is invalid
+     */
+    public static FastMoney fromMinor(long amount, Currency currency) {
+        if (!Money.isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+        return new FastMoney(amount, CurrencyRegistry.indexOf(currency));
+    }
+
+    /**
+     * Creates an instance with the value of money.
+     * 
+     * @param money
+     *            money
+     * 
+     * @return FastMoney instance
+     * @throws ArithmeticException
+     *             if the amount has more fraction digits than the currency or
+     *             does not fit into a long
+     */
+    public static FastMoney of(Money money) {
+        int index = money.currencyIndex();
+        long minor = money.getAmount().movePointRight(CurrencyRegistry.fractionDigitsAt(index)).longValueExact();
+        return new FastMoney(minor, index);
+    }
+
+    private FastMoney(long minor, int currencyIndex) {
+        this.minor = minor;
+        this.currencyIndex = currencyIndex;
+    }
+
+    /**
+     * Adds FastMoney and returns result.
+     * 
+     * @param other
+     *            amount to add
+     * 
+     * @return sum
+     */
+    public FastMoney add(FastMoney other) {
+        assertSameCurrencyAs(other);
+        return new FastMoney(Math.addExact(minor, other.minor), currencyIndex);
+    }
+
+    /**
+     * Subtracts an amount.
+     * 
+     * @param other
+     *            amount to subtract
+     * 
+     * @return result instance
+     */
+    public FastMoney subtract(FastMoney other) {
+        assertSameCurrencyAs(other);
+        return new FastMoney(Math.subtractExact(minor, other.minor), currencyIndex);
+    }
+
+    /**
+     * Negates the amount
+     * 
+     * @return negated instance
+     */
+    public FastMoney negate() {
+        return new FastMoney(Math.negateExact(minor), currencyIndex);
+    }
+
+    /**
+     * Allocates the amount to n portion. The first portions receive the
+     * remainder.
+     * 
+     * @param n
+     *            number of portions.
+     * 
+     * @return array with amount portions.
+     */
+    public FastMoney[] allocate(int n) {
+        FastMoney lowResult = new FastMoney(Math.floorDiv(minor, n), currencyIndex);
+        FastMoney highResult = new FastMoney(lowResult.minor + 1, currencyIndex);
+        FastMoney[] results = new FastMoney[n];
+        int remainder = (int) Math.floorMod(minor, n);
+        for (int i = 0; i < remainder; i++)
+            results[i] = highResult;
+        for (int i = remainder; i < n; i++)
+            results[i] = lowResult;
+        return results;
+    }
+
+    /**
+     * Returns the amount in minor currency.
+     * 
+     * @return amount in minor currency
+     */
+    public long asMinor() {
+        return minor;
+    }
+
+    /**
+     * Returns the amount in major currency.
+     * 
+     * @return the amount
+     */
+    public BigDecimal getAmount() {
+        return BigDecimal.valueOf(minor, CurrencyRegistry.fractionDigitsAt(currencyIndex));
+    }
+
+    /**
+     * Returns the currency.
+     * 
+     * @return the currency
+     */
+    public Currency getCurrency() {
+        return CurrencyRegistry.currencyAt(currencyIndex);
+    }
+
+    /**
+     * Determines if the amount is zero.
+     * 
+     * @return true if amount is zero.
+     */
+    public boolean isZero() {
+        return minor == 0;
+    }
+
+    /**
+     * Converts this instance to a Money.
+     * 
+     * @return Money with the same amount and currency
+     */
+    public Money toMoney() {
+        return Money.fromMinor(minor, currencyIndex);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        FastMoney other = (FastMoney) obj;
+        return minor == other.minor && currencyIndex == other.currencyIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Long.hashCode(minor);
+        result = prime * result + currencyIndex;
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return getAmount() + " " + getCurrency().toString();
+    }
+
+    /**
+     * Asserts that the passed FastMoney has same currency.
+     * 
+     * @param arg
+     *            money to test
+     */
+    private void assertSameCurrencyAs(FastMoney arg) {
+        if (currencyIndex != arg.currencyIndex)
+            throw new IllegalArgumentException("money math mismatch");
+    }
+}
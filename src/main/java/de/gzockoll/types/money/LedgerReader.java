@@ -0,0 +1,476 @@
+package de.gzockoll.types.money;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reads delimited ledger files and sums the amounts per currency, and
+ * optionally per key column, without creating a Money per row.
+ * <p/>
+ * The file is split into chunks at line boundaries. Chunks are memory
+ * mapped and read in parallel on the common fork-join pool; amount and
+ * currency columns are parsed from the mapped bytes directly into minor
+ * units. Lines end with LF or CR LF, fields are separated by a single
+ * ASCII delimiter and are not quoted. Amounts are written as by
+ * {@link MoneyParser} and must not have more fraction digits than their
+ * currency. Readers are immutable and can be shared between threads.
+ */
+public final class LedgerReader {
+
+    /**
+     * Marks an unused column.
+     */
+    private static final int NONE = -1;
+
+    private final byte delimiter;
+    private final int amountColumn;
+    private final int currencyColumn;
+    private final int keyColumn;
+    private final boolean header;
+    private final int chunkSize;
+
+    /**
+     * Returns a new builder.
+     * 
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private LedgerReader(Builder builder) {
+        delimiter = builder.delimiter;
+        amountColumn = builder.amountColumn;
+        currencyColumn = builder.currencyColumn;
+        keyColumn = builder.keyColumn;
+        header = builder.header;
+        chunkSize = builder.chunkSize;
+    }
+
+    /**
+     * Reads a ledger file.
+     * 
+     * @param file
+     *            file
+     * 
+     * @return totals
+     * @throws IOException
+     *             if the file can not be read or a line is invalid
+     */
+    public LedgerTotals read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            try {
+                return ForkJoinPool.commonPool().invoke(new ChunkTask(channel, bounds, 0, bounds.length - 1))
+                        .toTotals();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Returns the start offsets of the chunks followed by the file size.
+     * Every chunk but the first starts after a line feed.
+     */
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[(int) (size / chunkSize) + 2];
+        int n = 0;
+        bounds[n++] = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            long lineStart = nextLineStart(channel, position, buffer);
+            if (lineStart >= size)
+                break;
+            bounds[n++] = lineStart;
+            position = lineStart + chunkSize;
+        }
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * Returns the offset after the next line feed at or after position.
+     */
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        long offset = position;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read < 0)
+                return channel.size();
+            for (int i = 0; i < read; i++)
+                if (buffer.get(i) == '\n')
+                    return offset + i + 1;
+            offset += read;
+        }
+    }
+
+    /**
+     * Reads the lines of one mapped chunk.
+     */
+    private Aggregate readChunk(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        Aggregate aggregate = new Aggregate(keyColumn != NONE);
+        MoneyParser parser = new MoneyParser();
+        int[] fieldStarts = new int[Math.max(Math.max(amountColumn, currencyColumn), keyColumn) + 2];
+        int[] fieldEnds = new int[fieldStarts.length];
+        int limit = buffer.limit();
+        int lineStart = 0;
+        if (header && start == 0)
+            lineStart = skipLine(buffer, 0, limit);
+        int lastCurrencyField = NONE;
+        int lastCurrencyIndex = NONE;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n')
+                lineEnd++;
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r')
+                lineEnd--;
+            if (lineEnd > lineStart) {
+                int fields = splitFields(buffer, lineStart, lineEnd, fieldStarts, fieldEnds);
+                try {
+                    if (fields <= amountColumn || fields <= currencyColumn || fields <= keyColumn)
+                        throw new MoneyParseException("Missing column", lineEnd);
+                    long minor;
+                    int currencyIndex;
+                    if (currencyColumn == NONE) {
+                        minor = parser.parseMinor(buffer, fieldStarts[amountColumn], fieldEnds[amountColumn]);
+                        currencyIndex = parser.currencyIndex();
+                    } else {
+                        int field = packField(buffer, fieldStarts[currencyColumn], fieldEnds[currencyColumn]);
+                        if (field == NONE || field != lastCurrencyField) {
+                            lastCurrencyIndex = parser.parseCurrencyIndex(buffer, fieldStarts[currencyColumn],
+                                    fieldEnds[currencyColumn]);
+                            lastCurrencyField = field;
+                        }
+                        currencyIndex = lastCurrencyIndex;
+                        minor = parser.parseAmountMinor(buffer, fieldStarts[amountColumn], fieldEnds[amountColumn],
+                                currencyIndex);
+                    }
+                    aggregate.add(buffer, keyColumn == NONE ? 0 : fieldStarts[keyColumn], keyColumn == NONE ? 0
+                            : fieldEnds[keyColumn], currencyIndex, minor);
+                } catch (MoneyParseException e) {
+                    throw new IOException("Invalid ledger line at byte " + (start + lineStart) + ": "
+                            + e.getMessage(), e);
+                }
+            }
+            lineStart = next;
+        }
+        return aggregate;
+    }
+
+    /**
+     * Splits a line into fields up to the highest used column and returns
+     * the number of fields found.
+     */
+    private int splitFields(ByteBuffer buffer, int start, int end, int[] fieldStarts, int[] fieldEnds) {
+        int field = 0;
+        fieldStarts[0] = start;
+        for (int i = start; i < end && field < fieldStarts.length - 1; i++) {
+            if (buffer.get(i) == delimiter) {
+                fieldEnds[field++] = i;
+                fieldStarts[field] = i + 1;
+            }
+        }
+        fieldEnds[field] = end;
+        for (int i = fieldStarts[field]; i < end; i++) {
+            if (buffer.get(i) == delimiter) {
+                fieldEnds[field] = i;
+                break;
+            }
+        }
+        return field + 1;
+    }
+
+    /**
+     * Packs a field of up to three bytes into an int to recognize repeated
+     * currency codes, {@link #NONE} for other fields.
+     */
+    private static int packField(ByteBuffer buffer, int start, int end) {
+        if (end - start != 3)
+            return NONE;
+        return (buffer.get(start) & 0xff) << 16 | (buffer.get(start + 1) & 0xff) << 8
+                | (buffer.get(start + 2) & 0xff);
+    }
+
+    private static int skipLine(ByteBuffer buffer, int start, int limit) {
+        int i = start;
+        while (i < limit && buffer.get(i) != '\n')
+            i++;
+        return i + 1;
+    }
+
+    /**
+     * Reads a range of chunks, splitting it while it has more than one
+     * chunk.
+     */
+    private final class ChunkTask extends RecursiveTask<Aggregate> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(FileChannel channel, long[] bounds, int from, int to) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ChunkTask left = new ChunkTask(channel, bounds, from, middle);
+                left.fork();
+                Aggregate right = new ChunkTask(channel, bounds, middle, to).compute();
+                return left.join().addAll(right);
+            }
+            if (to == from)
+                return new Aggregate(keyColumn != NONE);
+            try {
+                return readChunk(channel, bounds[from], bounds[to]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Totals of one or more chunks.
+     */
+    private static final class Aggregate {
+        private final CurrencyTotals totals = new CurrencyTotals();
+        private final Map<Key, CurrencyTotals> totalsByKey;
+        private final Key probe;
+        private long rows;
+
+        private Aggregate(boolean keyed) {
+            totalsByKey = keyed ? new HashMap<Key, CurrencyTotals>() : null;
+            probe = keyed ? new Key(new byte[16], 0) : null;
+        }
+
+        void add(ByteBuffer buffer, int keyStart, int keyEnd, int currencyIndex, long minor) {
+            rows++;
+            totals.add(currencyIndex, minor);
+            if (totalsByKey == null)
+                return;
+            probe.set(buffer, keyStart, keyEnd);
+            CurrencyTotals keyTotals = totalsByKey.get(probe);
+            if (keyTotals == null) {
+                keyTotals = new CurrencyTotals();
+                totalsByKey.put(probe.copy(), keyTotals);
+            }
+            keyTotals.add(currencyIndex, minor);
+        }
+
+        Aggregate addAll(Aggregate other) {
+            rows += other.rows;
+            totals.addAll(other.totals);
+            if (totalsByKey != null) {
+                for (Map.Entry<Key, CurrencyTotals> entry : other.totalsByKey.entrySet()) {
+                    CurrencyTotals keyTotals = totalsByKey.get(entry.getKey());
+                    if (keyTotals == null)
+                        totalsByKey.put(entry.getKey(), entry.getValue());
+                    else
+                        keyTotals.addAll(entry.getValue());
+                }
+            }
+            return this;
+        }
+
+        LedgerTotals toTotals() {
+            Map<String, CurrencyTotals> byKey = new HashMap<>();
+            if (totalsByKey != null)
+                for (Map.Entry<Key, CurrencyTotals> entry : totalsByKey.entrySet())
+                    byKey.put(entry.getKey().toString(), entry.getValue());
+            return new LedgerTotals(rows, totals, byKey);
+        }
+    }
+
+    /**
+     * Key column bytes. The probe instance is reused for lookups, so a key
+     * is only copied when it occurs for the first time.
+     */
+    private static final class Key {
+        private byte[] bytes;
+        private int length;
+        private int hash;
+
+        private Key(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+            this.hash = hash(bytes, length);
+        }
+
+        void set(ByteBuffer buffer, int start, int end) {
+            length = end - start;
+            if (bytes.length < length)
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            for (int i = 0; i < length; i++)
+                bytes[i] = buffer.get(start + i);
+            hash = hash(bytes, length);
+        }
+
+        Key copy() {
+            return new Key(Arrays.copyOf(bytes, length), length);
+        }
+
+        private static int hash(byte[] bytes, int length) {
+            int result = 1;
+            for (int i = 0; i < length; i++)
+                result = 31 * result + bytes[i];
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(bytes, 0, length, other.bytes, 0, other.length);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Configures a reader. Columns are counted from 0.
+     */
+    public static final class Builder {
+        private byte delimiter = ',';
+        private int amountColumn = 0;
+        private int currencyColumn = NONE;
+        private int keyColumn = NONE;
+        private boolean header;
+        private int chunkSize = 16 * 1024 * 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the field delimiter, ',' by default.
+         * 
+         * @param delimiter
+         *            ASCII delimiter
+         * 
+         * @return this builder
+         */
+        public Builder delimiter(char delimiter) {
+            if (delimiter > 127 || delimiter == '\n' || delimiter == '\r')
+                throw new IllegalArgumentException("Invalid delimiter: " + delimiter);
+            this.delimiter = (byte) delimiter;
+            return this;
+        }
+
+        /**
+         * Sets the amount column, 0 by default. Without a currency column,
+         * the amount column holds amount and ISO code, e.g.
+         * <code>12.34 EUR</code>.
+         * 
+         * @param column
+         *            column
+         * 
+         * @return this builder
+         */
+        public Builder amountColumn(int column) {
+            amountColumn = checkColumn(column);
+            return this;
+        }
+
+        /**
+         * Sets the column with the ISO code of the currency.
+         * 
+         * @param column
+         *            column
+         * 
+         * @return this builder
+         */
+        public Builder currencyColumn(int column) {
+            currencyColumn = checkColumn(column);
+            return this;
+        }
+
+        /**
+         * Sets a column by which the totals are additionally grouped.
+         * 
+         * @param column
+         *            column
+         * 
+         * @return this builder
+         */
+        public Builder keyColumn(int column) {
+            keyColumn = checkColumn(column);
+            return this;
+        }
+
+        /**
+         * Sets whether the first line is a header to skip.
+         * 
+         * @param header
+         *            true to skip the first line
+         * 
+         * @return this builder
+         */
+        public Builder header(boolean header) {
+            this.header = header;
+            return this;
+        }
+
+        /**
+         * Sets the approximate number of bytes read by one task, 16 MB by
+         * default.
+         * 
+         * @param chunkSize
+         *            chunk size
+         * 
+         * @return this builder
+         */
+        public Builder chunkSize(int chunkSize) {
+            if (chunkSize <= 0)
+                throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Builds the reader.
+         * 
+         * @return reader
+         */
+        public LedgerReader build() {
+            return new LedgerReader(this);
+        }
+
+        private static int checkColumn(int column) {
+            if (column < 0)
+                throw new IllegalArgumentException("Invalid column: " + column);
+            return column;
+        }
+    }
+}
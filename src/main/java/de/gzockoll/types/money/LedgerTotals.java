@@ -0,0 +1,114 @@
+package de.gzockoll.types.money;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Totals and counts per currency read by a {@link LedgerReader}, overall
+ * and optionally per key.
+ */
+public final class LedgerTotals {
+
+    private final long rows;
+    private final CurrencyTotals totals;
+    private final Map<String, CurrencyTotals> totalsByKey;
+
+    LedgerTotals(long rows, CurrencyTotals totals, Map<String, CurrencyTotals> totalsByKey) {
+        this.rows = rows;
+        this.totals = totals;
+        this.totalsByKey = totalsByKey;
+    }
+
+    /**
+     * Returns the number of rows read, without header and empty lines.
+     * 
+     * @return number of rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the totals of all currencies which occurred.
+     * 
+     * @return totals by currency
+     */
+    public Map<Currency, Money> getTotals() {
+        return totals.toMap();
+    }
+
+    /**
+     * Returns the total of a currency.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return total, 0 if the currency did not occur
+     */
+    public Money getTotal(Currency currency) {
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        return index < 0 ? Money.fromMinor(0, currency) : totals.total(index);
+    }
+
+    /**
+     * Returns the number of rows with a currency.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return number of rows
+     */
+    public long getCount(Currency currency) {
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        return index < 0 ? 0 : totals.count(index);
+    }
+
+    /**
+     * Returns the keys which occurred, empty if the reader has no key
+     * column.
+     * 
+     * @return keys
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(totalsByKey.keySet());
+    }
+
+    /**
+     * Returns the totals of the rows with a key.
+     * 
+     * @param key
+     *            key
+     * 
+     * @return totals by currency, empty if the key did not occur
+     */
+    public Map<Currency, Money> getTotals(String key) {
+        CurrencyTotals keyTotals = totalsByKey.get(key);
+        return keyTotals == null ? new LinkedHashMap<Currency, Money>() : keyTotals.toMap();
+    }
+
+    /**
+     * Returns the number of rows with a key and currency.
+     * 
+     * @param key
+     *            key
+     * @param currency
+     *            currency
+     * 
+     * @return number of rows
+     */
+    public long getCount(String key, Currency currency) {
+        CurrencyTotals keyTotals = totalsByKey.get(key);
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        return keyTotals == null || index < 0 ? 0 : keyTotals.count(index);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "LedgerTotals[rows=" + rows + ", totals=" + getTotals() + "]";
+    }
+}
@@ -0,0 +1,169 @@
+package de.gzockoll.types.money;
+
+/**
+ * Open addressing map from {@link CurrencyRegistry} index to an amount in
+ * minor currency, with linear probing and no removal.
+ */
+final class MinorAmountMap {
+
+    /**
+     * Keys are stored as currency index plus one, 0 marks a free slot.
+     */
+    private int[] keys;
+
+    /**
+     * Amounts in minor currency by slot.
+     */
+    private long[] values;
+
+    /**
+     * Number of used slots.
+     */
+    private int size;
+
+    /**
+     * Creates a map for the expected number of currencies.
+     * 
+     * @param expectedSize
+     *            expected number of currencies
+     */
+    MinorAmountMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new long[capacity];
+    }
+
+    private MinorAmountMap(MinorAmountMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    /**
+     * Returns the amount for the currency index, 0 if absent.
+     * 
+     * @param currencyIndex
+     *            currency index
+     * 
+     * @return amount in minor currency
+     */
+    long get(int currencyIndex) {
+        int slot = find(currencyIndex + 1);
+        return keys[slot] == 0 ? 0 : values[slot];
+    }
+
+    /**
+     * Adds an amount for the currency index.
+     * 
+     * @param currencyIndex
+     *            currency index
+     * @param minor
+     *            amount in minor currency
+     * 
+     * @throws ArithmeticException
+     *             if the total does not fit into a long
+     */
+    void add(int currencyIndex, long minor) {
+        int key = currencyIndex + 1;
+        int slot = find(key);
+        if (keys[slot] == 0) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = Math.addExact(values[slot], minor);
+    }
+
+    /**
+     * Returns the number of currencies, including those with amount 0.
+     * 
+     * @return number of currencies
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots for iteration.
+     * 
+     * @return number of slots
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the currency index in the slot.
+     * 
+     * @param slot
+     *            slot
+     * 
+     * @return currency index, -1 for a free slot
+     */
+    int currencyIndexAt(int slot) {
+        return keys[slot] - 1;
+    }
+
+    /**
+     * Returns the amount in the slot.
+     * 
+     * @param slot
+     *            slot
+     * 
+     * @return amount in minor currency
+     */
+    long minorAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Returns a copy of this map.
+     * 
+     * @return copy
+     */
+    MinorAmountMap copy() {
+        return new MinorAmountMap(this);
+    }
+
+    /**
+     * Returns a copy of this map without amounts of 0.
+     * 
+     * @return compacted copy
+     */
+    MinorAmountMap withoutZeros() {
+        int nonZero = 0;
+        for (int slot = 0; slot < keys.length; slot++)
+            if (keys[slot] != 0 && values[slot] != 0)
+                nonZero++;
+        MinorAmountMap result = new MinorAmountMap(nonZero);
+        for (int slot = 0; slot < keys.length; slot++)
+            if (keys[slot] != 0 && values[slot] != 0)
+                result.add(keys[slot] - 1, values[slot]);
+        return result;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = (key * 0x9E3779B9 >>> 16) & mask;
+        while (keys[slot] != 0 && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package de.gzockoll.types.money;
+
+import java.math.RoundingMode;
+
+/**
+ * Bulk operations on arrays of amounts in minor currency.
+ * <p/>
+ * The loops are plain counted loops without calls or data dependent
+ * branches where possible, which the JIT unrolls and compiles to SIMD
+ * instructions. Overflow is detected with bit operations accumulated over
+ * the whole loop and reported after it, so the fast path carries no
+ * branch per element. Scaling is the exception: it divides each element by
+ * a 64 bit divisor, for which there is no SIMD instruction, so it stays a
+ * scalar loop. All results are exact and identical to the corresponding
+ * Money operations.
+ */
+public final class MinorArrays {
+
+    private MinorArrays() {
+    }
+
+    /**
+     * Adds two arrays element by element.
+     * 
+     * @param a
+     *            amounts
+     * @param b
+     *            amounts to add
+     * @param results
+     *            receives the sums, may be a or b
+     * @param length
+     *            number of elements
+     * 
+     * @throws ArithmeticException
+     *             if a sum does not fit into a long
+     */
+    public static void add(long[] a, long[] b, long[] results, int length) {
+        long overflow = 0;
+        for (int i = 0; i < length; i++) {
+            long x = a[i];
+            long y = b[i];
+            long r = x + y;
+            overflow |= (x ^ r) & (y ^ r);
+            results[i] = r;
+        }
+        checkOverflow(overflow);
+    }
+
+    /**
+     * Adds an amount to every element, e.g. a fee.
+     * 
+     * @param a
+     *            amounts
+     * @param addend
+     *            amount to add
+     * @param results
+     *            receives the sums, may be a
+     * @param length
+     *            number of elements
+     * 
+     * @throws ArithmeticException
+     *             if a sum does not fit into a long
+     */
+    public static void add(long[] a, long addend, long[] results, int length) {
+        long overflow = 0;
+        for (int i = 0; i < length; i++) {
+            long x = a[i];
+            long r = x + addend;
+            overflow |= (x ^ r) & (addend ^ r);
+            results[i] = r;
+        }
+        checkOverflow(overflow);
+    }
+
+    /**
+     * Subtracts two arrays element by element.
+     * 
+     * @param a
+     *            amounts
+     * @param b
+     *            amounts to subtract
+     * @param results
+     *            receives the differences, may be a or b
+     * @param length
+     *            number of elements
+     * 
+     * @throws ArithmeticException
+     *             if a difference does not fit into a long
+     */
+    public static void subtract(long[] a, long[] b, long[] results, int length) {
+        long overflow = 0;
+        for (int i = 0; i < length; i++) {
+            long x = a[i];
+            long y = b[i];
+            long r = x - y;
+            overflow |= (x ^ y) & (x ^ r);
+            results[i] = r;
+        }
+        checkOverflow(overflow);
+    }
+
+    /**
+     * Multiplies every element with numerator / denominator and rounds to
+     * minor units, e.g. 19 / 100 for a tax of 19 %. The result equals
+     * {@link Money#multiply(java.math.BigDecimal)} with the exact factor
+     * followed by rounding to the fraction digits of the currency.
+     * <p/>
+     * Each element is checked for a product below 2<sup>62</sup> and then
+     * divided and rounded by {@link MinorUnits#divide(long, long, RoundingMode)};
+     * both branches are predictable, and the division dominates the cost.
+     * Other elements take a 128 bit path.
+     * 
+     * @param a
+     *            amounts
+     * @param numerator
+     *            numerator
+     * @param denominator
+     *            positive denominator
+     * @param mode
+     *            rounding mode
+     * @param results
+     *            receives the scaled amounts, may be a
+     * @param length
+     *            number of elements
+     * 
+     * @throws ArithmeticException
+     *             if a result does not fit into a long, or mode is
+     *             {@link RoundingMode#UNNECESSARY} and rounding is necessary
+     */
+    public static void scale(long[] a, long numerator, long denominator, RoundingMode mode, long[] results,
+            int length) {
+        if (denominator <= 0)
+            throw new IllegalArgumentException("Invalid denominator: " + denominator);
+        if (numerator == Long.MIN_VALUE)
+            throw new ArithmeticException("Numerator out of range");
+        long absNumerator = Math.abs(numerator);
+        for (int i = 0; i < length; i++) {
+            long x = a[i];
+            if (((Math.abs(x) | absNumerator) >>> 31) == 0)
+                results[i] = MinorUnits.divide(x * numerator, denominator, mode);
+            else
+                results[i] = scaleWide(x, numerator, denominator, mode);
+        }
+    }
+
+    /**
+     * Multiplies an amount with numerator / denominator and rounds to minor
+     * units like {@link #scale(long[], long, long, RoundingMode, long[], int)}.
+     * 
+     * @param x
+     *            amount
+     * @param numerator
+     *            numerator, not {@link Long#MIN_VALUE}
+     * @param denominator
+     *            positive denominator
+     * @param mode
+     *            rounding mode
+     * 
+     * @return scaled amount
+     * @throws ArithmeticException
+     *             if the result does not fit into a long
+     */
+    static long scale(long x, long numerator, long denominator, RoundingMode mode) {
+        if (((Math.abs(x) | Math.abs(numerator)) >>> 31) == 0)
+            return MinorUnits.divide(x * numerator, denominator, mode);
+        return scaleWide(x, numerator, denominator, mode);
+    }
+
+    /**
+     * Marks the elements greater than a threshold.
+     * 
+     * @param a
+     *            amounts
+     * @param threshold
+     *            threshold
+     * @param mask
+     *            receives true for elements greater than threshold
+     * @param length
+     *            number of elements
+     * 
+     * @return number of marked elements
+     */
+    public static int greaterThan(long[] a, long threshold, boolean[] mask, int length) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            boolean greater = a[i] > threshold;
+            mask[i] = greater;
+            count += greater ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Marks the elements less than a threshold.
+     * 
+     * @param a
+     *            amounts
+     * @param threshold
+     *            threshold
+     * @param mask
+     *            receives true for elements less than threshold
+     * @param length
+     *            number of elements
+     * 
+     * @return number of marked elements
+     */
+    public static int lessThan(long[] a, long threshold, boolean[] mask, int length) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            boolean less = a[i] < threshold;
+            mask[i] = less;
+            count += less ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Sums the elements.
+     * 
+     * @param a
+     *            amounts
+     * @param length
+     *            number of elements
+     * 
+     * @return sum
+     * @throws ArithmeticException
+     *             if the sum does not fit into a long
+     */
+    public static long sum(long[] a, int length) {
+        // The low and high 32 bits are summed separately; neither sum can
+        // overflow for an int number of elements.
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < length; i++) {
+            long x = a[i];
+            low += x & 0xFFFFFFFFL;
+            high += x >> 32;
+        }
+        return combine(low, high);
+    }
+
+    /**
+     * Sums the marked elements.
+     * 
+     * @param a
+     *            amounts
+     * @param mask
+     *            true for the elements to sum
+     * @param length
+     *            number of elements
+     * 
+     * @return sum
+     * @throws ArithmeticException
+     *             if the sum does not fit into a long
+     */
+    public static long sum(long[] a, boolean[] mask, int length) {
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < length; i++) {
+            long x = mask[i] ? a[i] : 0;
+            low += x & 0xFFFFFFFFL;
+            high += x >> 32;
+        }
+        return combine(low, high);
+    }
+
+    /**
+     * Combines the sums of the low and high halves.
+     */
+    private static long combine(long low, long high) {
+        long upper = high + (low >>> 32);
+        if (upper < Integer.MIN_VALUE || upper > Integer.MAX_VALUE)
+            throw new ArithmeticException("long overflow");
+        return (upper << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static void checkOverflow(long overflow) {
+        if (overflow < 0)
+            throw new ArithmeticException("long overflow");
+    }
+
+    /**
+     * Scales one amount with 128 bit intermediate product.
+     */
+    private static long scaleWide(long x, long numerator, long denominator, RoundingMode mode) {
+        boolean negative = (x < 0) != (numerator < 0) && x != 0 && numerator != 0;
+        long absX = x < 0 ? -x : x;
+        long absNumerator = Math.abs(numerator);
+        long high = MinorUnits.multiplyHighUnsigned(absX, absNumerator);
+        long low = absX * absNumerator;
+        if (Long.compareUnsigned(high, denominator) >= 0)
+            throw new ArithmeticException("long overflow");
+        long quotient = MinorUnits.divideUnsigned(high, low, denominator);
+        long remainder = low - quotient * denominator;
+        if (Long.compareUnsigned(quotient, Long.MIN_VALUE) > 0)
+            throw new ArithmeticException("long overflow");
+        if (remainder != 0 && roundsAway(quotient, remainder, denominator, negative, mode))
+            quotient++;
+        if (quotient < 0 && !(negative && quotient == Long.MIN_VALUE))
+            throw new ArithmeticException("long overflow");
+        return negative ? -quotient : quotient;
+    }
+
+    /**
+     * Determines if a truncated unsigned quotient with a non-zero remainder
+     * is rounded away from zero.
+     */
+    private static boolean roundsAway(long quotient, long remainder, long divisor, boolean negative,
+            RoundingMode mode) {
+        switch (mode) {
+        case UNNECESSARY:
+            throw new ArithmeticException("Rounding necessary");
+        case DOWN:
+            return false;
+        case UP:
+            return true;
+        case CEILING:
+            return !negative;
+        case FLOOR:
+            return negative;
+        default:
+            long cmp = remainder - (divisor - remainder);
+            if (cmp == 0)
+                return mode == RoundingMode.HALF_UP || (mode == RoundingMode.HALF_EVEN && (quotient & 1) != 0);
+            return cmp > 0;
+        }
+    }
+}
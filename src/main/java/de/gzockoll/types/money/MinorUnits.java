@@ -0,0 +1,338 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Arithmetic helpers for amounts in minor currency units.
+ */
+final class MinorUnits {
+
+    /**
+     * Powers of ten which fit into a long.
+     */
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Returns 10 to the power of exponent.
+     * 
+     * @param exponent
+     *            exponent between 0 and 18
+     * 
+     * @return power of ten
+     */
+    static long powerOfTen(int exponent) {
+        return POWERS_OF_TEN[exponent];
+    }
+
+    /**
+     * Determines if the amount can be represented exactly as a long of minor
+     * units. Amounts with more fraction digits than the currency are not
+     * considered, even if the extra digits are zero.
+     * 
+     * @param amount
+     *            amount in major currency
+     * @param fractionDigits
+     *            fraction digits of the currency
+     * 
+     * @return true if {@link #toMinor(BigDecimal, int)} is exact
+     */
+    static boolean fitsMinor(BigDecimal amount, int fractionDigits) {
+        return amount.scale() <= fractionDigits && amount.precision() - amount.scale() + fractionDigits < 19;
+    }
+
+    /**
+     * Converts the amount to minor units. The result is only exact if
+     * {@link #fitsMinor(BigDecimal, int)} returns true.
+     * 
+     * @param amount
+     *            amount in major currency
+     * @param fractionDigits
+     *            fraction digits of the currency
+     * 
+     * @return amount in minor units
+     */
+    static long toMinor(BigDecimal amount, int fractionDigits) {
+        return amount.movePointRight(fractionDigits).longValue();
+    }
+
+    /**
+     * Divides and rounds according to the rounding mode.
+     * 
+     * @param dividend
+     *            dividend
+     * @param divisor
+     *            divisor, must not be zero or {@link Long#MIN_VALUE}
+     * @param mode
+     *            rounding mode
+     * 
+     * @return rounded quotient
+     * @throws ArithmeticException
+     *             if mode is {@link RoundingMode#UNNECESSARY} and the
+     *             division is not exact
+     */
+    static long divide(long dividend, long divisor, RoundingMode mode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0)
+            return quotient;
+        int sign = (dividend ^ divisor) < 0 ? -1 : 1;
+        boolean increment;
+        switch (mode) {
+        case UNNECESSARY:
+            throw new ArithmeticException("Rounding necessary");
+        case DOWN:
+            increment = false;
+            break;
+        case UP:
+            increment = true;
+            break;
+        case CEILING:
+            increment = sign > 0;
+            break;
+        case FLOOR:
+            increment = sign < 0;
+            break;
+        default:
+            long absRemainder = Math.abs(remainder);
+            long cmp = absRemainder - (Math.abs(divisor) - absRemainder);
+            if (cmp == 0)
+                increment = mode == RoundingMode.HALF_UP || (mode == RoundingMode.HALF_EVEN && (quotient & 1) != 0);
+            else
+                increment = cmp > 0;
+        }
+        return increment ? quotient + sign : quotient;
+    }
+
+    /**
+     * Multiplies each amount with factor and rounds the result to minor
+     * units.
+     * 
+     * @param amounts
+     *            amounts in minor currency
+     * @param factor
+     *            factor
+     * @param mode
+     *            rounding mode
+     * @param results
+     *            receives the results, may be amounts
+     * @param length
+     *            number of amounts to scale
+     * 
+     * @throws ArithmeticException
+     *             if a result does not fit into a long
+     */
+    static void scale(long[] amounts, BigDecimal factor, RoundingMode mode, long[] results, int length) {
+        BigInteger unscaled = factor.unscaledValue();
+        int scale = factor.scale();
+        if (unscaled.bitLength() >= Long.SIZE || scale < 0 || scale >= POWERS_OF_TEN.length) {
+            for (int i = 0; i < length; i++)
+                results[i] = scaleExact(amounts[i], factor, mode);
+            return;
+        }
+        long numerator = unscaled.longValue();
+        long denominator = POWERS_OF_TEN[scale];
+        for (int i = 0; i < length; i++) {
+            long amount = amounts[i];
+            long high = Math.abs(amount) | Math.abs(numerator);
+            if ((high >>> 31) == 0)
+                results[i] = divide(amount * numerator, denominator, mode);
+            else
+                results[i] = scaleExact(amount, factor, mode);
+        }
+    }
+
+    /**
+     * Multiplies the amount with factor and rounds the result to minor
+     * units.
+     * 
+     * @param amount
+     *            amount in minor currency
+     * @param factor
+     *            factor
+     * @param mode
+     *            rounding mode
+     * 
+     * @return scaled amount
+     * @throws ArithmeticException
+     *             if the result does not fit into a long
+     */
+    static long scale(long amount, BigDecimal factor, RoundingMode mode) {
+        BigInteger unscaled = factor.unscaledValue();
+        int scale = factor.scale();
+        if (unscaled.bitLength() >= Long.SIZE || scale < 0 || scale >= POWERS_OF_TEN.length)
+            return scaleExact(amount, factor, mode);
+        long numerator = unscaled.longValue();
+        if (((Math.abs(amount) | Math.abs(numerator)) >>> 31) != 0)
+            return scaleExact(amount, factor, mode);
+        return divide(amount * numerator, POWERS_OF_TEN[scale], mode);
+    }
+
+    /**
+     * Multiplies amount with factor using BigDecimal.
+     */
+    private static long scaleExact(long amount, BigDecimal factor, RoundingMode mode) {
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+        return BigDecimal.valueOf(amount).multiply(factor).setScale(0, mode).longValueExact();
+    }
+
+    /**
+     * Allocates the amount according to ratios by the largest remainder
+     * method. Each portion is the exact quota rounded towards zero; the
+     * remaining units go to the portions with the largest remainders of the
+     * quota, ties to the lower index. Quotas are computed with 128 bit
+     * intermediate products, the portions are selected in linear expected
+     * time.
+     * 
+     * @param amount
+     *            amount in minor currency
+     * @param ratios
+     *            non-negative ratios with a positive sum
+     * @param results
+     *            receives the portions, at least as long as ratios
+     * 
+     * @throws IllegalArgumentException
+     *             if a ratio is negative or all ratios are zero
+     * @throws ArithmeticException
+     *             if the sum of the ratios does not fit into a long
+     */
+    static void allocate(long amount, long[] ratios, long[] results) {
+        int n = ratios.length;
+        long total = 0;
+        for (long ratio : ratios) {
+            if (ratio < 0)
+                throw new IllegalArgumentException("Invalid ratio: " + ratio);
+            total = Math.addExact(total, ratio);
+        }
+        if (total == 0)
+            throw new IllegalArgumentException("Invalid ratios: sum is 0");
+        // unsigned, so that Long.MIN_VALUE is handled as well
+        long magnitude = amount < 0 ? -amount : amount;
+        long[] remainders = new long[n];
+        long distributed = 0;
+        int candidates = 0;
+        for (int i = 0; i < n; i++) {
+            long ratio = ratios[i];
+            long low = magnitude * ratio;
+            long part;
+            if (((magnitude | ratio) >>> 31) == 0)
+                part = low / total;
+            else
+                part = divideUnsigned(multiplyHighUnsigned(magnitude, ratio), low, total);
+            results[i] = part;
+            remainders[i] = low - part * total;
+            if (remainders[i] != 0)
+                candidates++;
+            distributed += part;
+        }
+        int extra = (int) (magnitude - distributed);
+        if (extra > 0) {
+            int[] order = new int[candidates];
+            for (int i = 0, j = 0; i < n; i++)
+                if (remainders[i] != 0)
+                    order[j++] = i;
+            selectLargest(order, remainders, extra);
+            for (int i = 0; i < extra; i++)
+                results[order[i]]++;
+        }
+        if (amount < 0)
+            for (int i = 0; i < n; i++)
+                results[i] = -results[i];
+    }
+
+    /**
+     * Returns the high 64 bits of the unsigned 128 bit product.
+     * 
+     * @param a
+     *            unsigned factor
+     * @param b
+     *            unsigned factor
+     * 
+     * @return high 64 bits of the product
+     */
+    static long multiplyHighUnsigned(long a, long b) {
+        long a0 = a & 0xFFFFFFFFL;
+        long a1 = a >>> 32;
+        long b0 = b & 0xFFFFFFFFL;
+        long b1 = b >>> 32;
+        long p01 = a0 * b1;
+        long p10 = a1 * b0;
+        long middle = ((a0 * b0) >>> 32) + (p01 & 0xFFFFFFFFL) + (p10 & 0xFFFFFFFFL);
+        return a1 * b1 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
+    }
+
+    /**
+     * Divides the unsigned 128 bit value high:low by a positive divisor.
+     * The quotient must fit into 64 bits, i.e. high must be less than
+     * divisor.
+     * 
+     * @param high
+     *            high 64 bits of the dividend
+     * @param low
+     *            low 64 bits of the dividend
+     * @param divisor
+     *            positive divisor
+     * 
+     * @return unsigned quotient
+     */
+    static long divideUnsigned(long high, long low, long divisor) {
+        long quotient = 0;
+        for (int i = 0; i < Long.SIZE; i++) {
+            high = (high << 1) | (low >>> 63);
+            low <<= 1;
+            quotient <<= 1;
+            if (Long.compareUnsigned(high, divisor) >= 0) {
+                high -= divisor;
+                quotient |= 1;
+            }
+        }
+        return quotient;
+    }
+
+    /**
+     * Moves the k indexes with the largest remainders, ties to the lower
+     * index, to the front of order.
+     */
+    private static void selectLargest(int[] order, long[] remainders, int k) {
+        int lo = 0;
+        int hi = order.length - 1;
+        while (lo < hi) {
+            int pivot = order[lo + ThreadLocalRandom.current().nextInt(hi - lo + 1)];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (precedes(order[i], pivot, remainders))
+                    i++;
+                while (precedes(pivot, order[j], remainders))
+                    j--;
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (k - 1 <= j)
+                hi = j;
+            else if (k - 1 >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    private static boolean precedes(int a, int b, long[] remainders) {
+        return remainders[a] > remainders[b] || (remainders[a] == remainders[b] && a < b);
+    }
+}
@@ -3,10 +3,8 @@ package de.gzockoll.types.money;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
-import java.text.NumberFormat;
 import java.util.Locale;
 
-import org.joda.time.DateTime;
 import org.joda.time.Interval;
 
 import com.ibm.icu.util.Currency;
@@ -20,7 +18,7 @@ public class Money {
      *            cents
      */
     public static Money cents(int i) {
-        return fromMinor(i, Currency.getInstance("EUR"));
+        return fromMinor(i, EUR);
     }
 
     /**
@@ -34,11 +32,13 @@ public class Money {
      * @return Money instance
      */
     public static Money fromMajor(long amount, Currency currency) {
-        return new Money(amount * centFactor(currency), currency);
+        int index = validIndexOf(currency);
+        return fromMinor(amount * CurrencyRegistry.centFactorAt(index), index);
     }
 
     /**
-     * Creates an instance with minor currency value amount.
+     * Creates an instance with minor currency value amount. Small amounts
+     * are shared instances.
      * 
      * @param amount
      *            minor currency value
@@ -48,7 +48,7 @@ public class Money {
      * @return Money instance
      */
     public static Money fromMinor(long amount, Currency currency) {
-        return new Money(amount, currency);
+        return fromMinor(amount, validIndexOf(currency));
     }
 
     /**
@@ -72,20 +72,35 @@ public class Money {
         return getCurrencyByLocale(Locale.getDefault());
     }
 
+    /**
+     * The euro currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Rounding mode of {@link #scaled()}.
+     */
+    private static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+
     /**
      * The currency.
      */
     private final Currency currency;
 
+    /**
+     * The index of the currency in the {@link CurrencyRegistry}.
+     */
+    private final int currencyIndex;
+
     /**
      * The amount.
      */
     private final BigDecimal amount;
 
     /**
-     * Possible fraction values of cents.
+     * Validity of currencies at the current day.
      */
-    private static final int[] cents = new int[] { 1, 10, 100, 1000 };
+    private static final CurrencyValidityCache validityCache = new CurrencyValidityCache();
 
     /**
      * Creates a euro instance with major value d.
@@ -96,7 +111,7 @@ public class Money {
      * @return instance with value d euro.
      */
     public static Money euros(long d) {
-        return fromMajor(d, Currency.getInstance("EUR"));
+        return fromMajor(d, EUR);
     }
 
     /**
@@ -105,19 +120,69 @@ public class Money {
      * @return instance with value 0 and default currency.
      */
     public static Money zero() {
-        return new Money(0, getDefaultCurrency());
+        return zero(getDefaultCurrency());
     }
 
     /**
-     * Returns the cent factor for the currency.
+     * Returns the shared instance with value 0 and the currency.
      * 
      * @param currency
-     *            currency.
+     *            currency
+     * 
+     * @return instance with value 0
+     */
+    public static Money zero(Currency currency) {
+        return fromMinor(0, currency);
+    }
+
+    /**
+     * Creates an instance with minor currency value amount without
+     * validating the currency. Small non-negative amounts are served from a
+     * per currency cache.
      * 
-     * @return cent factor
+     * @param amount
+     *            minor currency value
+     * @param currencyIndex
+     *            {@link CurrencyRegistry} index of a validated currency
+     * 
+     * @return Money instance
+     */
+    static Money fromMinor(long amount, int currencyIndex) {
+        Money[] cache = null;
+        int slot = 0;
+        if (amount >= 0) {
+            long centFactor = CurrencyRegistry.centFactorAt(currencyIndex);
+            if (amount <= CurrencyRegistry.CACHE_MINOR_HIGH) {
+                cache = CurrencyRegistry.minorValuesAt(currencyIndex);
+                slot = (int) amount;
+            } else if (amount % centFactor == 0 && amount / centFactor <= CurrencyRegistry.CACHE_MAJOR_HIGH) {
+                cache = CurrencyRegistry.majorValuesAt(currencyIndex);
+                slot = (int) (amount / centFactor);
+            }
+        }
+        if (cache != null && cache[slot] != null)
+            return cache[slot];
+        Money result = new Money(BigDecimal.valueOf(amount, CurrencyRegistry.fractionDigitsAt(currencyIndex)),
+                CurrencyRegistry.currencyAt(currencyIndex), currencyIndex);
+        if (cache != null)
+            cache[slot] = result;
+        return result;
+    }
+
+    /**
+     * Validates the currency and returns its {@link CurrencyRegistry} index.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return index of the currency
+     * @throws IllegalArgumentException
+     *             if currency is invalid
      */
-    private static int centFactor(Currency currency) {
-        return cents[currency.getDefaultFractionDigits()];
+    private static int validIndexOf(Currency currency) {
+        if (!isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+        return CurrencyRegistry.indexOf(currency);
     }
 
     /**
@@ -133,18 +198,55 @@ public class Money {
         assertCurrencyIsValid(currency);
         this.amount = amount;
         this.currency = currency;
+        this.currencyIndex = CurrencyRegistry.indexOf(currency);
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.CONSTRUCTIONS);
     }
 
     /**
-     * Create a new Money.
+     * Create a new Money without validating the currency, e.g. because it is
+     * taken from an existing instance.
      * 
      * @param amount
      *            amount
      * @param currency
      *            currency
+     * @param currencyIndex
+     *            {@link CurrencyRegistry} index of the currency
+     */
+    private Money(BigDecimal amount, Currency currency, int currencyIndex) {
+        super();
+        this.amount = amount;
+        this.currency = currency;
+        this.currencyIndex = currencyIndex;
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.CONSTRUCTIONS);
+    }
+
+    /**
+     * Creates an instance with the currency of this instance. The currency is
+     * not validated again.
+     * 
+     * @param amount
+     *            amount
+     * 
+     * @return Money instance
      */
-    private Money(long amount, Currency currency) {
-        this(BigDecimal.valueOf(amount, currency.getDefaultFractionDigits()), currency);
+    private Money withAmount(BigDecimal amount) {
+        return new Money(amount, currency, currencyIndex);
+    }
+
+    /**
+     * Creates an instance with minor currency value amount and the currency
+     * of this instance. The currency is not validated again.
+     * 
+     * @param amount
+     *            minor currency value
+     * 
+     * @return Money instance
+     */
+    private Money withMinor(long amount) {
+        return fromMinor(amount, currencyIndex);
     }
 
     /**
@@ -158,22 +260,24 @@ public class Money {
     }
 
     /**
+     * The result is cached until the current day changes.
+     * 
      * @param currency
      * @return true if currency is valid
      */
     public static boolean isCurrencyValid(Currency currency) {
-        DateTime now = new DateTime();
-        return isCurrencyValid(currency, new Interval(now, now));
+        return validityCache.isValid(currency);
     }
 
     /**
+     * The result is looked up in the {@link CurrencyValidityIndex}.
+     * 
      * @param currency
      * @param interval
      * @return true if currency is valid
      */
     public static boolean isCurrencyValid(Currency currency, Interval interval) {
-        return Currency.isAvailable(currency.getCurrencyCode(), interval.getStart().toDate(), interval.getEnd()
-                .toDate());
+        return CurrencyValidityIndex.isValid(currency, interval);
     }
 
     /**
@@ -187,8 +291,22 @@ public class Money {
      * @return sum
      */
     public Money add(Money other) {
+        return add(other, MoneyContext.current());
+    }
+
+    /**
+     * Adds Money and rounds the result according to the context.
+     * 
+     * @param other
+     *            amount to add
+     * @param context
+     *            context
+     * 
+     * @return sum
+     */
+    public Money add(Money other, MoneyContext context) {
         assertSameCurrencyAs(other);
-        return new Money(amount.add(other.amount), currency);
+        return withAmount(context.round(amount.add(other.amount)));
     }
 
     /**
@@ -200,8 +318,8 @@ public class Money {
      * @return array with amount portions.
      */
     public Money[] allocate(int n) {
-        Money lowResult = Money.fromMinor(asMinor() / n, currency);
-        Money highResult = new Money(asMinor() / n + 1, currency);
+        Money lowResult = withMinor(asMinor() / n);
+        Money highResult = withMinor(asMinor() / n + 1);
         Money[] results = new Money[n];
         int remainder = (int) asMinor() % n;
         for (int i = 0; i < remainder; i++)
@@ -212,7 +330,9 @@ public class Money {
     }
 
     /**
-     * Allocate the amount according to ratios.
+     * Allocate the amount according to ratios. The remaining minor units
+     * after rounding every portion towards zero are given to the portions
+     * with the largest remainders.
      * 
      * @param ratios
      *            ratios.
@@ -220,29 +340,35 @@ public class Money {
      * @return array with amount portions.
      */
     public Money[] allocate(long[] ratios) {
-        long total = 0;
-        for (int i = 0; i < ratios.length; i++)
-            total += ratios[i];
-        long remainder = asMinor();
+        long[] minors = new long[ratios.length];
+        allocateMinor(ratios, minors);
         Money[] results = new Money[ratios.length];
-        for (int i = 0; i < results.length; i++) {
-            long part = asMinor() / total * ratios[i];
-            results[i] = Money.fromMinor(part, currency);
-            remainder -= part;
-        }
-        for (int i = 0; i < remainder; i++) {
-            results[i] = results[i].add(fromMinor(1, currency));
-        }
+        for (int i = 0; i < results.length; i++)
+            results[i] = withMinor(minors[i]);
         return results;
     }
 
+    /**
+     * Allocate the amount in minor currency according to ratios, like
+     * {@link #allocate(long[])}, without creating Money instances.
+     * 
+     * @param ratios
+     *            non-negative ratios with a positive sum.
+     * @param results
+     *            receives the portions in minor currency, at least as long
+     *            as ratios.
+     */
+    public void allocateMinor(long[] ratios, long[] results) {
+        MinorUnits.allocate(asMinor(), ratios, results);
+    }
+
     /**
      * Returns the amount in minor currency.
      * 
      * @return amount in minor currency
      */
     public long asMinor() {
-        return amount.multiply(new BigDecimal(centFactor())).longValue();
+        return MinorUnits.toMinor(amount, CurrencyRegistry.fractionDigitsAt(currencyIndex));
     }
 
     /** {@inheritDoc} */
@@ -263,7 +389,7 @@ public class Money {
         if (currency == null) {
             if (other.currency != null)
                 return false;
-        } else if (!currency.getCurrencyCode().equals(other.currency.getCurrencyCode()))
+        } else if (currencyIndex != other.currencyIndex)
             return false;
         return true;
     }
@@ -279,10 +405,10 @@ public class Money {
      * @param the
      *            Locale which is use for formatting
      * @return a string representing the amount and currency
+     * @see MoneyFormat
      */
     public String getAsFormattedString(Locale loc) {
-        NumberFormat n = NumberFormat.getCurrencyInstance(loc);
-        return n.format(amount.doubleValue());
+        return MoneyFormat.getInstance(loc, currency).format(this);
     }
 
     /**
@@ -299,7 +425,7 @@ public class Money {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((amount == null) ? 0 : amount.hashCode());
-        result = prime * result + ((currency == null) ? 0 : currency.getCurrencyCode().hashCode());
+        result = prime * result + ((currency == null) ? 0 : currencyIndex);
         return result;
     }
 
@@ -309,7 +435,7 @@ public class Money {
      * @return true if amount is zero.
      */
     public boolean isZero() {
-        return equals(Money.zero());
+        return amount.signum() == 0;
     }
 
     /**
@@ -320,7 +446,26 @@ public class Money {
      * @return the result
      */
     public Money multiply(BigDecimal factor) {
-        return new Money(factor.multiply(amount), currency);
+        return multiply(factor, MoneyContext.current());
+    }
+
+    /**
+     * Multiplies this amount with a factor and rounds the result according
+     * to the context.
+     * 
+     * @param factor
+     *            factor
+     * @param context
+     *            context
+     * 
+     * @return the result
+     */
+    public Money multiply(BigDecimal factor, MoneyContext context) {
+        MoneyEvents.Multiply event = MoneyEvents.beginMultiply();
+        BigDecimal result = context.round(factor.multiply(amount));
+        if (event != null)
+            event.end(currency.getCurrencyCode(), result);
+        return withAmount(result);
     }
 
     /**
@@ -332,19 +477,107 @@ public class Money {
      */
     public Money multiply(BigDecimal factor, MathContext ctx) {
         BigDecimal value = factor.multiply(amount, ctx);
-        return new Money(value, currency);
+        return withAmount(value);
     }
 
     /**
-     * Multiplies this amount with a factor
+     * Multiplies this amount with a factor. The factor is used with the
+     * digits of its shortest decimal representation, i.e. 0.19 is 0.19.
      * 
      * @param factor
      * 
      * @return the result
      */
     public Money multiply(double factor) {
-        MathContext ct = getMathContext();
-        return multiply(new BigDecimal(factor, ct));
+        return multiply(BigDecimal.valueOf(factor));
+    }
+
+    /**
+     * Multiplies this amount with a factor and rounds the result according
+     * to the context.
+     * 
+     * @param factor
+     *            factor
+     * @param context
+     *            context
+     * 
+     * @return the result
+     */
+    public Money multiply(double factor, MoneyContext context) {
+        return multiply(BigDecimal.valueOf(factor), context);
+    }
+
+    /**
+     * Multiplies this amount n times with a factor and rounds the result
+     * like {@link #scaled()}. The result is identical to calling
+     * {@link #multiply(BigDecimal)} n times followed by {@link #scaled()},
+     * but the power of the factor is computed by squaring with only as many
+     * digits as the rounding needs.
+     * 
+     * @param factor
+     *            factor
+     * @param n
+     *            number of multiplications, not negative
+     * 
+     * @return the rounded result
+     */
+    public Money multiplyRepeated(BigDecimal factor, int n) {
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(currencyIndex);
+        FactorPower power = new FactorPower(factor, n, amount.precision() - amount.scale(), fractionDigits);
+        return withAmount(power.apply(amount, fractionDigits, ROUNDING));
+    }
+
+    /**
+     * Multiplies this amount n times with a factor, computing the power of
+     * the factor by squaring with every product rounded to ctx, and rounds
+     * the result like {@link #scaled()}. Unlike
+     * {@link #multiplyRepeated(BigDecimal, int)}, the result may differ from
+     * exact repeated multiplication if ctx has too few digits.
+     * 
+     * @param factor
+     *            factor
+     * @param n
+     *            number of multiplications, not negative
+     * @param ctx
+     *            context of the intermediate products
+     * 
+     * @return the rounded result
+     */
+    public Money multiplyRepeated(BigDecimal factor, int n, MathContext ctx) {
+        if (n < 0)
+            throw new IllegalArgumentException("Invalid exponent: " + n);
+        BigDecimal value = amount.multiply(FactorPower.pow(factor, n, ctx), ctx);
+        return withAmount(value.setScale(CurrencyRegistry.fractionDigitsAt(currencyIndex), ROUNDING));
+    }
+
+    /**
+     * Multiplies every amount n times with the same factor, like
+     * {@link #multiplyRepeated(BigDecimal, int)}. The power of the factor is
+     * computed once for all amounts.
+     * 
+     * @param values
+     *            amounts, all in the same currency
+     * @param factor
+     *            factor
+     * @param n
+     *            number of multiplications, not negative
+     * 
+     * @return the rounded results
+     */
+    public static Money[] multiplyRepeated(Money[] values, BigDecimal factor, int n) {
+        Money[] results = new Money[values.length];
+        if (values.length == 0)
+            return results;
+        int digits = Integer.MIN_VALUE;
+        for (Money value : values) {
+            values[0].assertSameCurrencyAs(value);
+            digits = Math.max(digits, value.amount.precision() - value.amount.scale());
+        }
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(values[0].currencyIndex);
+        FactorPower power = new FactorPower(factor, n, digits, fractionDigits);
+        for (int i = 0; i < values.length; i++)
+            results[i] = values[i].withAmount(power.apply(values[i].amount, fractionDigits, ROUNDING));
+        return results;
     }
 
     /**
@@ -353,17 +586,17 @@ public class Money {
      * @return negated instance
      */
     public Money negate() {
-        return new Money(amount.negate(), currency);
+        return withAmount(amount.negate());
     }
 
     /**
-     * Scales the amount.
+     * Scales the amount to the fraction digits of the currency, rounding
+     * half up.
      * 
      * @return scaled instance
      */
     public Money scaled() {
-        MathContext ct = getMathContext();
-        return new Money(amount.setScale(ct.getPrecision(), ct.getRoundingMode()), currency);
+        return withAmount(amount.setScale(CurrencyRegistry.fractionDigitsAt(currencyIndex), ROUNDING));
     }
 
     /**
@@ -375,8 +608,22 @@ public class Money {
      * @return result insance
      */
     public Money subtract(Money other) {
+        return subtract(other, MoneyContext.current());
+    }
+
+    /**
+     * Subtracts an amount and rounds the result according to the context.
+     * 
+     * @param other
+     *            amount to subtract
+     * @param context
+     *            context
+     * 
+     * @return difference
+     */
+    public Money subtract(Money other, MoneyContext context) {
         assertSameCurrencyAs(other);
-        return new Money(amount.subtract(other.amount), currency);
+        return withAmount(context.round(amount.subtract(other.amount)));
     }
 
     /** {@inheritDoc} */
@@ -392,20 +639,19 @@ public class Money {
      *            money to test
      */
     private void assertSameCurrencyAs(Money arg) {
-        if (!currency.equals(arg.currency))
+        if (currencyIndex != arg.currencyIndex) {
+            if (MoneyMetrics.isEnabled())
+                MoneyMetrics.increment(MoneyMetrics.Counter.CURRENCY_MISMATCHES);
             throw new IllegalArgumentException("money math mismatch");
+        }
     }
 
     /**
-     * Returns the cent factor of this instance.
+     * Returns the {@link CurrencyRegistry} index of the currency.
      * 
-     * @return cent factor of this instance
+     * @return index of the currency
      */
-    private long centFactor() {
-        return centFactor(currency);
-    }
-
-    private MathContext getMathContext() {
-        return new MathContext(currency.getDefaultFractionDigits(), RoundingMode.HALF_UP);
+    int currencyIndex() {
+        return currencyIndex;
     }
 }
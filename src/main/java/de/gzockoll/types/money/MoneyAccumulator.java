@@ -0,0 +1,270 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * A running total of one currency which many threads can add to.
+ * <p/>
+ * Amounts in minor units are added to striped cells, one cache line apart,
+ * chosen by the adding thread. A cell which would overflow a long is left
+ * unchanged and the amount is added exactly to a separate BigDecimal total,
+ * as are amounts with more fraction digits than the currency.
+ * <p/>
+ * Every update is bracketed by two {@link LongAdder}s counting started and
+ * finished updates. {@link #snapshot()} reads the finished count, the totals
+ * and then the started count, and retries until both are equal, i.e. no
+ * update overlapped the read. If updates keep overlapping, new updates are
+ * held back until the running ones have finished, so the snapshot is always
+ * the total of exactly the updates completed before it.
+ */
+public final class MoneyAccumulator {
+
+    /**
+     * Longs per cell, so that cells do not share a cache line.
+     */
+    private static final int STRIDE = 8;
+
+    /**
+     * Optimistic snapshot attempts before updates are held back.
+     */
+    private static final int ATTEMPTS = 16;
+
+    /**
+     * The currency.
+     */
+    private final Currency currency;
+
+    /**
+     * The index of the currency in the {@link CurrencyRegistry}.
+     */
+    private final int currencyIndex;
+
+    /**
+     * Totals in minor currency, the cell i at index i * {@link #STRIDE}.
+     */
+    private final AtomicLongArray cells;
+
+    /**
+     * Cell count - 1, the cell count is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * Total of amounts which are not in minor units or overflowed a cell,
+     * null if there are none.
+     */
+    private final AtomicReference<BigDecimal> exact = new AtomicReference<>();
+
+    /**
+     * Updates started, including updates backed out while held back.
+     */
+    private final LongAdder started = new LongAdder();
+
+    /**
+     * Updates finished or backed out.
+     */
+    private final LongAdder finished = new LongAdder();
+
+    /**
+     * True while a snapshot or reset holds back new updates.
+     */
+    private volatile boolean holding;
+
+    /**
+     * Creates an accumulator with total 0.
+     * 
+     * @param currency
+     *            currency
+     * @throws IllegalArgumentException
+     *             if currency is invalid
+     */
+    public MoneyAccumulator(Currency currency) {
+        if (!Money.isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+        this.currency = currency;
+        this.currencyIndex = CurrencyRegistry.indexOf(currency);
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+        this.cells = new AtomicLongArray(count * STRIDE);
+        this.mask = count - 1;
+    }
+
+    /**
+     * Adds an amount.
+     * 
+     * @param value
+     *            amount
+     * @throws IllegalArgumentException
+     *             if the amount has another currency
+     */
+    public void add(Money value) {
+        if (value.currencyIndex() != currencyIndex)
+            throw new IllegalArgumentException("money math mismatch");
+        BigDecimal amount = value.getAmount();
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(currencyIndex);
+        enter();
+        try {
+            if (MinorUnits.fitsMinor(amount, fractionDigits))
+                addMinor(MinorUnits.toMinor(amount, fractionDigits));
+            else
+                addExact(amount);
+        } finally {
+            finished.increment();
+        }
+    }
+
+    /**
+     * Adds an amount in minor currency.
+     * 
+     * @param minor
+     *            amount in minor currency
+     */
+    public void add(long minor) {
+        enter();
+        try {
+            addMinor(minor);
+        } finally {
+            finished.increment();
+        }
+    }
+
+    /**
+     * Returns the current total of all completed updates.
+     * 
+     * @return total
+     */
+    public Money snapshot() {
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            long done = finished.sum();
+            Money total = read();
+            if (started.sum() == done)
+                return total;
+            Thread.onSpinWait();
+        }
+        synchronized (this) {
+            hold();
+            try {
+                return read();
+            } finally {
+                holding = false;
+            }
+        }
+    }
+
+    /**
+     * Returns the current total and resets it to 0. Updates running
+     * concurrently are completed before and remain in the accumulator.
+     * 
+     * @return total before the reset
+     */
+    public synchronized Money sumThenReset() {
+        hold();
+        try {
+            Money total = read();
+            clear();
+            return total;
+        } finally {
+            holding = false;
+        }
+    }
+
+    /**
+     * Resets the total to 0.
+     */
+    public synchronized void reset() {
+        hold();
+        try {
+            clear();
+        } finally {
+            holding = false;
+        }
+    }
+
+    /**
+     * Returns the currency.
+     * 
+     * @return the currency
+     */
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    private void enter() {
+        for (;;) {
+            started.increment();
+            if (!holding)
+                return;
+            finished.increment();
+            while (holding)
+                Thread.onSpinWait();
+        }
+    }
+
+    private void hold() {
+        holding = true;
+        while (finished.sum() != started.sum())
+            Thread.onSpinWait();
+    }
+
+    private void addMinor(long minor) {
+        int cell = (int) Thread.currentThread().getId();
+        for (;;) {
+            int i = (cell & mask) * STRIDE;
+            long total = cells.get(i);
+            long sum = total + minor;
+            if (((total ^ sum) & (minor ^ sum)) < 0) {
+                addExact(BigDecimal.valueOf(minor, CurrencyRegistry.fractionDigitsAt(currencyIndex)));
+                return;
+            }
+            if (cells.compareAndSet(i, total, sum))
+                return;
+            cell++;
+        }
+    }
+
+    private void addExact(BigDecimal amount) {
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+        exact.accumulateAndGet(amount, (total, x) -> total == null ? x : total.add(x));
+    }
+
+    private Money read() {
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(currencyIndex);
+        long minor = 0;
+        BigDecimal exactTotal = exact.get();
+        for (int i = 0; i < cells.length(); i += STRIDE) {
+            long cell = cells.get(i);
+            long sum = minor + cell;
+            if (((minor ^ sum) & (cell ^ sum)) < 0) {
+                BigDecimal amount = BigDecimal.valueOf(cell, fractionDigits);
+                exactTotal = exactTotal == null ? amount : exactTotal.add(amount);
+            } else {
+                minor = sum;
+            }
+        }
+        return total(minor, exactTotal);
+    }
+
+    private void clear() {
+        for (int i = 0; i < cells.length(); i += STRIDE)
+            cells.set(i, 0);
+        exact.set(null);
+    }
+
+    private Money total(long minor, BigDecimal exactTotal) {
+        if (exactTotal == null)
+            return Money.fromMinor(minor, currencyIndex);
+        return new Money(exactTotal.add(BigDecimal.valueOf(minor, CurrencyRegistry.fractionDigitsAt(currencyIndex))),
+                currency);
+    }
+}
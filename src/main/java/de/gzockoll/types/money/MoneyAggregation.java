@@ -0,0 +1,149 @@
+package de.gzockoll.types.money;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Sums collections of Money per currency.
+ * <p/>
+ * Amounts are accumulated in minor units; only amounts with more fraction
+ * digits than their currency are added as BigDecimal. The resulting maps
+ * contain one total per currency which occurred in the input.
+ */
+public final class MoneyAggregation {
+
+    /**
+     * Minimum number of elements processed by a single fork-join task.
+     */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private MoneyAggregation() {
+    }
+
+    /**
+     * Sums the amounts per currency.
+     * 
+     * @param values
+     *            amounts
+     * 
+     * @return totals by currency
+     */
+    public static Map<Currency, Money> sumByCurrency(Iterable<Money> values) {
+        CurrencyTotals totals = new CurrencyTotals();
+        for (Money value : values)
+            totals.add(value);
+        return totals.toMap();
+    }
+
+    /**
+     * Sums the amounts per currency.
+     * 
+     * @param values
+     *            amounts
+     * 
+     * @return totals by currency
+     */
+    public static Map<Currency, Money> sumByCurrency(Money... values) {
+        CurrencyTotals totals = new CurrencyTotals();
+        for (Money value : values)
+            totals.add(value);
+        return totals.toMap();
+    }
+
+    /**
+     * Sums the amounts per currency. Parallel streams are summed in
+     * parallel.
+     * 
+     * @param values
+     *            amounts
+     * 
+     * @return totals by currency
+     */
+    public static Map<Currency, Money> sumByCurrency(Stream<Money> values) {
+        return values.collect(summingByCurrency());
+    }
+
+    /**
+     * Sums the amounts per currency using the common fork-join pool.
+     * 
+     * @param values
+     *            amounts
+     * 
+     * @return totals by currency
+     */
+    public static Map<Currency, Money> parallelSumByCurrency(Money... values) {
+        return parallelSumByCurrency(Arrays.spliterator(values));
+    }
+
+    /**
+     * Sums the amounts per currency using the common fork-join pool.
+     * 
+     * @param values
+     *            amounts
+     * 
+     * @return totals by currency
+     */
+    public static Map<Currency, Money> parallelSumByCurrency(Iterable<Money> values) {
+        return parallelSumByCurrency(values.spliterator());
+    }
+
+    /**
+     * Returns a collector which sums the amounts per currency.
+     * 
+     * @return collector
+     */
+    public static Collector<Money, ?, Map<Currency, Money>> summingByCurrency() {
+        return Collector.of(CurrencyTotals::new, CurrencyTotals::add, CurrencyTotals::addAll,
+                CurrencyTotals::toMap, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector of amount statistics per currency.
+     * 
+     * @return collector
+     */
+    public static Collector<Money, ?, CurrencyStatistics> statisticsByCurrency() {
+        return Collector.of(CurrencyStatistics::new, CurrencyStatistics::accept, CurrencyStatistics::combine,
+                Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    private static Map<Currency, Money> parallelSumByCurrency(Spliterator<Money> values) {
+        return ForkJoinPool.commonPool().invoke(new SumTask(values)).toMap();
+    }
+
+    /**
+     * Sums the elements of a spliterator, splitting it while it is large.
+     */
+    private static final class SumTask extends RecursiveTask<CurrencyTotals> {
+        private static final long serialVersionUID = 1L;
+
+        private final Spliterator<Money> values;
+
+        private SumTask(Spliterator<Money> values) {
+            this.values = values;
+        }
+
+        @Override
+        protected CurrencyTotals compute() {
+            if (values.estimateSize() > PARALLEL_THRESHOLD) {
+                Spliterator<Money> prefix = values.trySplit();
+                if (prefix != null) {
+                    SumTask left = new SumTask(prefix);
+                    left.fork();
+                    CurrencyTotals right = new SumTask(values).compute();
+                    return left.join().addAll(right);
+                }
+            }
+            CurrencyTotals totals = new CurrencyTotals();
+            values.forEachRemaining(totals::add);
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * An immutable amount of money in several currencies.
+ * <p/>
+ * Amounts are kept in minor units per currency in a primitive open
+ * addressing map; currencies with amount 0 are not kept. Amounts with more
+ * fraction digits than their currency are rejected with an
+ * {@link ArithmeticException}, as is a total which does not fit into a
+ * long.
+ */
+public final class MoneyBag {
+
+    /**
+     * The empty bag.
+     */
+    private static final MoneyBag EMPTY = new MoneyBag(new MinorAmountMap(1));
+
+    /**
+     * Amounts by currency index, never modified and without zeros.
+     */
+    private final MinorAmountMap amounts;
+
+    /**
+     * Returns the empty bag.
+     * 
+     * @return empty bag
+     */
+    public static MoneyBag empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a bag with the sum of the values.
+     * 
+     * @param values
+     *            values
+     * 
+     * @return bag
+     */
+    public static MoneyBag of(Money... values) {
+        Builder builder = builder(values.length);
+        for (Money value : values)
+            builder.add(value);
+        return builder.build();
+    }
+
+    /**
+     * Returns a new builder.
+     * 
+     * @return builder
+     */
+    public static Builder builder() {
+        return builder(8);
+    }
+
+    /**
+     * Returns a new builder sized for the expected number of currencies.
+     * 
+     * @param expectedCurrencies
+     *            expected number of currencies
+     * 
+     * @return builder
+     */
+    public static Builder builder(int expectedCurrencies) {
+        return new Builder(new MinorAmountMap(expectedCurrencies));
+    }
+
+    private MoneyBag(MinorAmountMap amounts) {
+        this.amounts = amounts;
+    }
+
+    /**
+     * Adds an amount and returns the result.
+     * 
+     * @param value
+     *            amount to add
+     * 
+     * @return sum
+     */
+    public MoneyBag plus(Money value) {
+        return toBuilder().add(value).build();
+    }
+
+    /**
+     * Adds a bag and returns the result.
+     * 
+     * @param other
+     *            bag to add
+     * 
+     * @return sum
+     */
+    public MoneyBag plus(MoneyBag other) {
+        return toBuilder().addAll(other).build();
+    }
+
+    /**
+     * Subtracts an amount and returns the result.
+     * 
+     * @param value
+     *            amount to subtract
+     * 
+     * @return difference
+     */
+    public MoneyBag minus(Money value) {
+        return toBuilder().subtract(value).build();
+    }
+
+    /**
+     * Negates all amounts.
+     * 
+     * @return negated bag
+     */
+    public MoneyBag negate() {
+        MinorAmountMap result = new MinorAmountMap(amounts.size());
+        for (int slot = 0; slot < amounts.capacity(); slot++)
+            if (amounts.currencyIndexAt(slot) >= 0)
+                result.add(amounts.currencyIndexAt(slot), Math.negateExact(amounts.minorAt(slot)));
+        return new MoneyBag(result);
+    }
+
+    /**
+     * Allocates the amount of every currency to n portions.
+     * 
+     * @param n
+     *            number of portions
+     * 
+     * @return n bags with amount portions
+     */
+    public MoneyBag[] allocate(int n) {
+        long[] ratios = new long[n];
+        Arrays.fill(ratios, 1);
+        return allocate(ratios);
+    }
+
+    /**
+     * Allocates the amount of every currency according to ratios.
+     * 
+     * @param ratios
+     *            ratios
+     * 
+     * @return one bag per ratio
+     */
+    public MoneyBag[] allocate(long[] ratios) {
+        Builder[] builders = new Builder[ratios.length];
+        for (int i = 0; i < builders.length; i++)
+            builders[i] = builder(amounts.size());
+        long[] parts = new long[ratios.length];
+        for (int slot = 0; slot < amounts.capacity(); slot++) {
+            int currencyIndex = amounts.currencyIndexAt(slot);
+            if (currencyIndex < 0)
+                continue;
+            MinorUnits.allocate(amounts.minorAt(slot), ratios, parts);
+            for (int i = 0; i < parts.length; i++)
+                builders[i].amounts.add(currencyIndex, parts[i]);
+        }
+        MoneyBag[] results = new MoneyBag[ratios.length];
+        for (int i = 0; i < results.length; i++)
+            results[i] = builders[i].build();
+        return results;
+    }
+
+    /**
+     * Returns the amount of the currency.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return amount, 0 if the bag has no amount of the currency
+     */
+    public Money get(Currency currency) {
+        return Money.fromMinor(getMinor(currency), currency);
+    }
+
+    /**
+     * Returns the amount of the currency in minor currency.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return amount in minor currency
+     */
+    public long getMinor(Currency currency) {
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        return index < 0 ? 0 : amounts.get(index);
+    }
+
+    /**
+     * Returns the number of currencies with an amount other than 0.
+     * 
+     * @return number of currencies
+     */
+    public int size() {
+        return amounts.size();
+    }
+
+    /**
+     * Determines if the bag has no amount other than 0.
+     * 
+     * @return true if the bag is empty
+     */
+    public boolean isEmpty() {
+        return amounts.size() == 0;
+    }
+
+    /**
+     * Passes the amount of every currency to the consumer.
+     * 
+     * @param consumer
+     *            consumer
+     */
+    public void forEach(MinorAmountConsumer consumer) {
+        for (int slot = 0; slot < amounts.capacity(); slot++) {
+            int currencyIndex = amounts.currencyIndexAt(slot);
+            if (currencyIndex >= 0)
+                consumer.accept(CurrencyRegistry.currencyAt(currencyIndex), amounts.minorAt(slot));
+        }
+    }
+
+    /**
+     * Returns a builder initialized with the amounts of this bag.
+     * 
+     * @return builder
+     */
+    public Builder toBuilder() {
+        return new Builder(amounts.copy());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        MoneyBag other = (MoneyBag) obj;
+        if (amounts.size() != other.amounts.size())
+            return false;
+        for (int slot = 0; slot < amounts.capacity(); slot++) {
+            int currencyIndex = amounts.currencyIndexAt(slot);
+            if (currencyIndex >= 0 && other.amounts.get(currencyIndex) != amounts.minorAt(slot))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (int slot = 0; slot < amounts.capacity(); slot++) {
+            int currencyIndex = amounts.currencyIndexAt(slot);
+            if (currencyIndex >= 0)
+                result += currencyIndex ^ Long.hashCode(amounts.minorAt(slot));
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        forEach((currency, minor) -> {
+            if (result.length() > 1)
+                result.append(", ");
+            result.append(BigDecimal.valueOf(minor, currency.getDefaultFractionDigits())).append(' ').append(
+                    currency);
+        });
+        return result.append(']').toString();
+    }
+
+    /**
+     * Receives an amount in minor currency.
+     */
+    public interface MinorAmountConsumer {
+
+        /**
+         * Receives an amount.
+         * 
+         * @param currency
+         *            currency
+         * @param minor
+         *            amount in minor currency
+         */
+        void accept(Currency currency, long minor);
+    }
+
+    /**
+     * A mutable bag. Builders are not thread-safe.
+     */
+    public static final class Builder {
+        private final MinorAmountMap amounts;
+
+        private Builder(MinorAmountMap amounts) {
+            this.amounts = amounts;
+        }
+
+        /**
+         * Adds an amount.
+         * 
+         * @param value
+         *            amount
+         * 
+         * @return this builder
+         */
+        public Builder add(Money value) {
+            int currencyIndex = value.currencyIndex();
+            amounts.add(currencyIndex, toMinor(value, currencyIndex));
+            return this;
+        }
+
+        /**
+         * Adds an amount in minor currency.
+         * 
+         * @param minor
+         *            amount in minor currency
+         * @param currency
+         *            currency
+         * 
+         * @return this builder
+         */
+        public Builder add(long minor, Currency currency) {
+            if (!Money.isCurrencyValid(currency))
+                throw new IllegalArgumentException("Invalid currency: " + currency);
+            amounts.add(CurrencyRegistry.indexOf(currency), minor);
+            return this;
+        }
+
+        /**
+         * Subtracts an amount.
+         * 
+         * @param value
+         *            amount
+         * 
+         * @return this builder
+         */
+        public Builder subtract(Money value) {
+            int currencyIndex = value.currencyIndex();
+            amounts.add(currencyIndex, Math.negateExact(toMinor(value, currencyIndex)));
+            return this;
+        }
+
+        /**
+         * Adds all amounts of a bag.
+         * 
+         * @param bag
+         *            bag
+         * 
+         * @return this builder
+         */
+        public Builder addAll(MoneyBag bag) {
+            MinorAmountMap other = bag.amounts;
+            for (int slot = 0; slot < other.capacity(); slot++)
+                if (other.currencyIndexAt(slot) >= 0)
+                    amounts.add(other.currencyIndexAt(slot), other.minorAt(slot));
+            return this;
+        }
+
+        /**
+         * Returns the current amount of the currency in minor currency.
+         * 
+         * @param currency
+         *            currency
+         * 
+         * @return amount in minor currency
+         */
+        public long getMinor(Currency currency) {
+            int index = CurrencyRegistry.registeredIndexOf(currency);
+            return index < 0 ? 0 : amounts.get(index);
+        }
+
+        /**
+         * Builds an immutable bag.
+         * 
+         * @return bag
+         */
+        public MoneyBag build() {
+            MinorAmountMap result = amounts.withoutZeros();
+            return result.size() == 0 ? EMPTY : new MoneyBag(result);
+        }
+
+        private static long toMinor(Money value, int currencyIndex) {
+            return value.getAmount().movePointRight(CurrencyRegistry.fractionDigitsAt(currencyIndex))
+                    .longValueExact();
+        }
+    }
+}
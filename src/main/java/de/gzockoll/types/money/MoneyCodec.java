@@ -0,0 +1,244 @@
+package de.gzockoll.types.money;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Binary encoding of Money.
+ * <p/>
+ * A value starts with a 16 bit header holding the ISO 4217 alphabetic code
+ * of the currency as base 26 number; numeric codes are not used since some
+ * are shared by several currencies. Amounts with the fraction digits of
+ * the currency which fit into a long of minor units follow as 64 bit
+ * integer, giving a fixed size of {@link #FIXED_SIZE} bytes. Other amounts
+ * set the escape bit of the header and follow as 32 bit scale, 32 bit
+ * length and the two's complement bytes of the unscaled value, so the
+ * scale is kept. All numbers are big-endian, as written by
+ * {@link DataOutput}.
+ */
+public final class MoneyCodec {
+
+    /**
+     * Size of a value with an amount in minor units.
+     */
+    public static final int FIXED_SIZE = 10;
+
+    /**
+     * Header bit marking an amount which is not a long of minor units.
+     */
+    private static final int ESCAPE = 0x8000;
+
+    /**
+     * Header bits holding the alphabetic code.
+     */
+    private static final int CODE_MASK = 0x7fff;
+
+    /**
+     * Largest length of an unscaled value accepted when reading.
+     */
+    private static final int MAX_UNSCALED_LENGTH = 4096;
+
+    private MoneyCodec() {
+    }
+
+    /**
+     * Writes money to a buffer.
+     * 
+     * @param value
+     *            value
+     * @param buffer
+     *            target buffer
+     * 
+     * @throws IllegalArgumentException
+     *             if the currency code is not three letters
+     */
+    public static void write(Money value, ByteBuffer buffer) {
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(value.currencyIndex());
+        BigDecimal amount = value.getAmount();
+        int code = CurrencyRegistry.alphabeticCodeAt(value.currencyIndex());
+        if (amount.scale() == fractionDigits && MinorUnits.fitsMinor(amount, fractionDigits)) {
+            buffer.putShort((short) code);
+            buffer.putLong(MinorUnits.toMinor(amount, fractionDigits));
+        } else {
+            byte[] unscaled = amount.unscaledValue().toByteArray();
+            buffer.putShort((short) (code | ESCAPE));
+            buffer.putInt(amount.scale());
+            buffer.putInt(unscaled.length);
+            buffer.put(unscaled);
+        }
+    }
+
+    /**
+     * Writes money to a DataOutput.
+     * 
+     * @param value
+     *            value
+     * @param out
+     *            target
+     * 
+     * @throws IOException
+     *             if out fails
+     * @throws IllegalArgumentException
+     *             if the currency code is not three letters
+     */
+    public static void write(Money value, DataOutput out) throws IOException {
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(value.currencyIndex());
+        BigDecimal amount = value.getAmount();
+        int code = CurrencyRegistry.alphabeticCodeAt(value.currencyIndex());
+        if (amount.scale() == fractionDigits && MinorUnits.fitsMinor(amount, fractionDigits)) {
+            out.writeShort(code);
+            out.writeLong(MinorUnits.toMinor(amount, fractionDigits));
+        } else {
+            byte[] unscaled = amount.unscaledValue().toByteArray();
+            out.writeShort(code | ESCAPE);
+            out.writeInt(amount.scale());
+            out.writeInt(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    /**
+     * Reads money from a buffer.
+     * 
+     * @param buffer
+     *            source buffer
+     * 
+     * @return value
+     * @throws IllegalArgumentException
+     *             if the currency is invalid or the length of the amount is
+     *             out of range
+     */
+    public static Money read(ByteBuffer buffer) {
+        int header = buffer.getShort() & 0xffff;
+        Currency currency = CurrencyRegistry.currencyAt(indexOfHeader(header));
+        if ((header & ESCAPE) == 0)
+            return Money.fromMinor(buffer.getLong(), currency);
+        int scale = buffer.getInt();
+        byte[] unscaled = new byte[checkLength(buffer.getInt(), buffer.remaining())];
+        buffer.get(unscaled);
+        return new Money(new BigDecimal(new BigInteger(unscaled), scale), currency);
+    }
+
+    /**
+     * Reads money from a DataInput.
+     * 
+     * @param in
+     *            source
+     * 
+     * @return value
+     * @throws IOException
+     *             if in fails
+     * @throws IllegalArgumentException
+     *             if the currency is invalid or the length of the amount is
+     *             out of range
+     */
+    public static Money read(DataInput in) throws IOException {
+        int header = in.readUnsignedShort();
+        Currency currency = CurrencyRegistry.currencyAt(indexOfHeader(header));
+        if ((header & ESCAPE) == 0)
+            return Money.fromMinor(in.readLong(), currency);
+        int scale = in.readInt();
+        byte[] unscaled = new byte[checkLength(in.readInt(), MAX_UNSCALED_LENGTH)];
+        in.readFully(unscaled);
+        return new Money(new BigDecimal(new BigInteger(unscaled), scale), currency);
+    }
+
+    /**
+     * Writes values to a buffer.
+     * 
+     * @param values
+     *            values
+     * @param buffer
+     *            target buffer
+     */
+    public static void write(Money[] values, ByteBuffer buffer) {
+        for (Money value : values)
+            write(value, buffer);
+    }
+
+    /**
+     * Reads values from a buffer.
+     * 
+     * @param buffer
+     *            source buffer
+     * @param values
+     *            receives the values
+     */
+    public static void read(ByteBuffer buffer, Money[] values) {
+        for (int i = 0; i < values.length; i++)
+            values[i] = read(buffer);
+    }
+
+    /**
+     * Writes amounts in minor currency to a buffer.
+     * 
+     * @param minors
+     *            amounts in minor currency
+     * @param currencyIndexes
+     *            {@link CurrencyRegistry} index per amount
+     * @param offset
+     *            first element to write
+     * @param length
+     *            number of elements to write
+     * @param buffer
+     *            target buffer
+     * 
+     * @throws IllegalArgumentException
+     *             if a currency code is not three letters
+     */
+    public static void write(long[] minors, int[] currencyIndexes, int offset, int length, ByteBuffer buffer) {
+        for (int i = offset; i < offset + length; i++) {
+            buffer.putShort((short) CurrencyRegistry.alphabeticCodeAt(currencyIndexes[i]));
+            buffer.putLong(minors[i]);
+        }
+    }
+
+    /**
+     * Reads amounts in minor currency from a buffer without creating
+     * objects.
+     * 
+     * @param buffer
+     *            source buffer
+     * @param minors
+     *            receives the amounts in minor currency
+     * @param currencyIndexes
+     *            receives the {@link CurrencyRegistry} index per amount
+     * @param offset
+     *            first element to read into
+     * @param length
+     *            number of elements to read
+     * 
+     * @throws IllegalArgumentException
+     *             if a currency code is out of range or an amount is not in
+     *             minor units
+     */
+    public static void read(ByteBuffer buffer, long[] minors, int[] currencyIndexes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            int header = buffer.getShort() & 0xffff;
+            if ((header & ESCAPE) != 0)
+                throw new IllegalArgumentException("Amount not in minor units at position "
+                        + (buffer.position() - 2));
+            currencyIndexes[i] = indexOfHeader(header);
+            minors[i] = buffer.getLong();
+        }
+    }
+
+    private static int checkLength(int length, int remaining) {
+        if (length < 0 || length > remaining || length > MAX_UNSCALED_LENGTH)
+            throw new IllegalArgumentException("Invalid length: " + length);
+        return length;
+    }
+
+    private static int indexOfHeader(int header) {
+        int index = CurrencyRegistry.indexOfAlphabeticCode(header & CODE_MASK);
+        if (index < 0)
+            throw new IllegalArgumentException("Unknown currency code: " + (header & CODE_MASK));
+        return index;
+    }
+}
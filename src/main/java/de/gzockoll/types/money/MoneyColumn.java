@@ -0,0 +1,431 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.LongPredicate;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * An immutable column of amounts held as minor currency units.
+ * <p/>
+ * A column either has a single currency or stores one currency index per
+ * amount. Money instances are only created when elements are accessed.
+ */
+public final class MoneyColumn {
+
+    /**
+     * Marks a column with more than one currency.
+     */
+    private static final int MIXED = -1;
+
+    /**
+     * The amounts in minor currency.
+     */
+    private final long[] minors;
+
+    /**
+     * Currency index per amount, null for a single currency column.
+     */
+    private final short[] currencyIndexes;
+
+    /**
+     * Currency index of a single currency column, otherwise {@link #MIXED}.
+     */
+    private final int currencyIndex;
+
+    /**
+     * Creates a single currency column.
+     * 
+     * @param minors
+     *            amounts in minor currency, copied
+     * @param currency
+     *            currency
+     * 
+     * @return column
+     */
+    public static MoneyColumn of(long[] minors, Currency currency) {
+        assertCurrencyIsValid(currency);
+        return new MoneyColumn(minors.clone(), null, CurrencyRegistry.indexOf(currency));
+    }
+
+    /**
+     * Creates a column from Money instances.
+     * 
+     * @param values
+     *            values
+     * 
+     * @return column
+     * @throws ArithmeticException
+     *             if an amount has more fraction digits than its currency
+     */
+    public static MoneyColumn of(Iterable<Money> values) {
+        Builder builder = builder();
+        for (Money value : values)
+            builder.add(value);
+        return builder.build();
+    }
+
+    /**
+     * Returns a new builder.
+     * 
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private MoneyColumn(long[] minors, short[] currencyIndexes, int currencyIndex) {
+        this.minors = minors;
+        this.currencyIndexes = currencyIndexes;
+        this.currencyIndex = currencyIndex;
+    }
+
+    /**
+     * Returns the number of amounts.
+     * 
+     * @return number of amounts
+     */
+    public int size() {
+        return minors.length;
+    }
+
+    /**
+     * Determines if all amounts have the same currency.
+     * 
+     * @return true for a single currency column
+     */
+    public boolean isSingleCurrency() {
+        return currencyIndex != MIXED;
+    }
+
+    /**
+     * Returns the amount at index in minor currency.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return amount in minor currency
+     */
+    public long minorAt(int index) {
+        return minors[index];
+    }
+
+    /**
+     * Returns the currency at index.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return currency
+     */
+    public Currency currencyAt(int index) {
+        return CurrencyRegistry.currencyAt(currencyIndexAt(index));
+    }
+
+    /**
+     * Returns the amount at index.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return new Money instance
+     */
+    public Money get(int index) {
+        return Money.fromMinor(minors[index], currencyIndexAt(index));
+    }
+
+    /**
+     * Returns a read-only view which creates Money instances on access.
+     * 
+     * @return list view
+     */
+    public List<Money> asList() {
+        return new MoneyList();
+    }
+
+    /**
+     * Returns a copy of the amounts in minor currency.
+     * 
+     * @return amounts in minor currency
+     */
+    public long[] toMinorArray() {
+        return minors.clone();
+    }
+
+    /**
+     * Sums a single currency column.
+     * 
+     * @return sum
+     * @throws IllegalArgumentException
+     *             if the column has more than one currency
+     * @throws ArithmeticException
+     *             if the sum does not fit into a long
+     */
+    public Money sum() {
+        if (!isSingleCurrency())
+            throw new IllegalArgumentException("money math mismatch");
+        return Money.fromMinor(MinorArrays.sum(minors, minors.length), currencyIndex);
+    }
+
+    /**
+     * Sums all amounts with the currency.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return sum
+     * @throws ArithmeticException
+     *             if the sum does not fit into a long
+     */
+    public Money sum(Currency currency) {
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        long sum = 0;
+        if (isSingleCurrency()) {
+            if (index == currencyIndex)
+                sum = MinorArrays.sum(minors, minors.length);
+        } else {
+            for (int i = 0; i < minors.length; i++)
+                if (currencyIndexes[i] == index)
+                    sum = Math.addExact(sum, minors[i]);
+        }
+        return Money.fromMinor(sum, currency);
+    }
+
+    /**
+     * Negates all amounts.
+     * 
+     * @return column with negated amounts
+     * @throws ArithmeticException
+     *             if an amount is {@link Long#MIN_VALUE}
+     */
+    public MoneyColumn negate() {
+        long[] result = new long[minors.length];
+        for (int i = 0; i < minors.length; i++)
+            result[i] = Math.negateExact(minors[i]);
+        return new MoneyColumn(result, currencyIndexes, currencyIndex);
+    }
+
+    /**
+     * Multiplies all amounts with a factor and rounds to minor currency.
+     * 
+     * @param factor
+     *            factor
+     * @param mode
+     *            rounding mode
+     * 
+     * @return column with scaled amounts
+     * @throws ArithmeticException
+     *             if a result does not fit into a long
+     */
+    public MoneyColumn scale(BigDecimal factor, RoundingMode mode) {
+        long[] result = new long[minors.length];
+        MinorUnits.scale(minors, factor, mode, result, minors.length);
+        return new MoneyColumn(result, currencyIndexes, currencyIndex);
+    }
+
+    /**
+     * Returns the amounts in minor currency matching the predicate.
+     * 
+     * @param predicate
+     *            predicate on the amount in minor currency
+     * 
+     * @return filtered column
+     */
+    public MoneyColumn filter(LongPredicate predicate) {
+        long[] result = new long[minors.length];
+        short[] resultIndexes = isSingleCurrency() ? null : new short[minors.length];
+        int n = 0;
+        for (int i = 0; i < minors.length; i++) {
+            if (predicate.test(minors[i])) {
+                if (resultIndexes != null)
+                    resultIndexes[n] = currencyIndexes[i];
+                result[n++] = minors[i];
+            }
+        }
+        return new MoneyColumn(Arrays.copyOf(result, n), resultIndexes == null ? null : Arrays.copyOf(
+                resultIndexes, n), currencyIndex);
+    }
+
+    /**
+     * Returns the amounts with the currency.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return single currency column
+     */
+    public MoneyColumn filter(Currency currency) {
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        if (isSingleCurrency())
+            return index == currencyIndex ? this : new MoneyColumn(new long[0], null, index);
+        long[] result = new long[minors.length];
+        int n = 0;
+        for (int i = 0; i < minors.length; i++)
+            if (currencyIndexes[i] == index)
+                result[n++] = minors[i];
+        return new MoneyColumn(Arrays.copyOf(result, n), null, index);
+    }
+
+    /**
+     * Allocates every amount to n portions. Column i of the result holds the
+     * i-th portion of every amount.
+     * 
+     * @param n
+     *            number of portions
+     * 
+     * @return n columns with amount portions
+     */
+    public MoneyColumn[] allocate(int n) {
+        long[] ratios = new long[n];
+        Arrays.fill(ratios, 1);
+        return allocate(ratios);
+    }
+
+    /**
+     * Allocates every amount according to ratios. Column i of the result
+     * holds the portion for ratio i of every amount.
+     * 
+     * @param ratios
+     *            ratios
+     * 
+     * @return one column per ratio
+     */
+    public MoneyColumn[] allocate(long[] ratios) {
+        long[][] portions = new long[ratios.length][minors.length];
+        long[] parts = new long[ratios.length];
+        for (int i = 0; i < minors.length; i++) {
+            MinorUnits.allocate(minors[i], ratios, parts);
+            for (int j = 0; j < parts.length; j++)
+                portions[j][i] = parts[j];
+        }
+        MoneyColumn[] results = new MoneyColumn[ratios.length];
+        for (int j = 0; j < results.length; j++)
+            results[j] = new MoneyColumn(portions[j], currencyIndexes, currencyIndex);
+        return results;
+    }
+
+    /**
+     * Returns the currency index at index.
+     * 
+     * @param index
+     *            index
+     * 
+     * @return currency index
+     */
+    int currencyIndexAt(int index) {
+        if (isSingleCurrency()) {
+            if (index < 0 || index >= minors.length)
+                throw new IndexOutOfBoundsException("Index: " + index);
+            return currencyIndex;
+        }
+        return currencyIndexes[index];
+    }
+
+    private static void assertCurrencyIsValid(Currency currency) {
+        if (!Money.isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+    }
+
+    /**
+     * Read-only list view on the column.
+     */
+    private final class MoneyList extends AbstractList<Money> implements RandomAccess {
+
+        @Override
+        public Money get(int index) {
+            return MoneyColumn.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return minors.length;
+        }
+    }
+
+    /**
+     * Collects amounts for a column. A currency index per amount is only
+     * stored once a second currency is added.
+     */
+    public static final class Builder {
+        private long[] minors = new long[16];
+        private short[] currencyIndexes;
+        private int currencyIndex = MIXED;
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds an amount.
+         * 
+         * @param money
+         *            amount
+         * 
+         * @return this builder
+         * @throws ArithmeticException
+         *             if the amount has more fraction digits than its
+         *             currency
+         */
+        public Builder add(Money money) {
+            int index = money.currencyIndex();
+            long minor = money.getAmount().movePointRight(CurrencyRegistry.fractionDigitsAt(index)).longValueExact();
+            return add(minor, index);
+        }
+
+        /**
+         * Adds an amount.
+         * 
+         * @param minor
+         *            amount in minor currency
+         * @param currency
+         *            currency
+         * 
+         * @return this builder
+         */
+        public Builder add(long minor, Currency currency) {
+            assertCurrencyIsValid(currency);
+            return add(minor, CurrencyRegistry.indexOf(currency));
+        }
+
+        private Builder add(long minor, int index) {
+            if (size == minors.length) {
+                minors = Arrays.copyOf(minors, size * 2);
+                if (currencyIndexes != null)
+                    currencyIndexes = Arrays.copyOf(currencyIndexes, size * 2);
+            }
+            if (size == 0) {
+                currencyIndex = index;
+            } else if (currencyIndexes == null && index != currencyIndex) {
+                currencyIndexes = new short[minors.length];
+                Arrays.fill(currencyIndexes, 0, size, (short) currencyIndex);
+                currencyIndex = MIXED;
+            }
+            if (currencyIndexes != null) {
+                if (index > Short.MAX_VALUE)
+                    throw new IllegalStateException("Too many currencies: " + index);
+                currencyIndexes[size] = (short) index;
+            }
+            minors[size++] = minor;
+            return this;
+        }
+
+        /**
+         * Builds the column.
+         * 
+         * @return column
+         * @throws IllegalStateException
+         *             if no amount was added
+         */
+        public MoneyColumn build() {
+            if (size == 0)
+                throw new IllegalStateException("Column without currency");
+            return new MoneyColumn(Arrays.copyOf(minors, size), currencyIndexes == null ? null : Arrays.copyOf(
+                    currencyIndexes, size), currencyIndex);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Bounds the amounts produced by Money arithmetic.
+ * <p/>
+ * A context has a maximum scale, a rounding mode and an optional rounding
+ * step. Results of {@link Money#add(Money)}, {@link Money#subtract(Money)}
+ * and the multiply methods with more fraction digits than the maximum scale
+ * are rounded to it; with a rounding step, all results are rounded to a
+ * multiple of the step instead, e.g. 0.05 for cash amounts. This keeps amounts in
+ * long chains of operations short.
+ * <p/>
+ * Operations either take a context explicitly or use the context of the
+ * current thread, which is {@link #UNLIMITED} unless one is activated:
+ * 
+ * <pre>
+ * try (MoneyContext.Scope scope = MoneyContext.of(6, RoundingMode.HALF_EVEN).activate()) {
+ *     ...
+ * }
+ * </pre>
+ * 
+ * Contexts are immutable.
+ */
+public final class MoneyContext {
+
+    /**
+     * Context which does not round, as Money did before contexts existed.
+     */
+    public static final MoneyContext UNLIMITED = new MoneyContext(Integer.MAX_VALUE, RoundingMode.UNNECESSARY, null);
+
+    /**
+     * Contexts activated per thread.
+     */
+    private static final ThreadLocal<MoneyContext> current = new ThreadLocal<>();
+
+    private final int maxScale;
+    private final RoundingMode roundingMode;
+    private final BigDecimal roundingStep;
+
+    /**
+     * Returns a context with a maximum scale.
+     * 
+     * @param maxScale
+     *            maximum number of fraction digits of results, not negative
+     * @param roundingMode
+     *            rounding mode
+     * 
+     * @return context
+     * @throws IllegalArgumentException
+     *             if the scale is negative or the rounding mode is missing
+     */
+    public static MoneyContext of(int maxScale, RoundingMode roundingMode) {
+        if (maxScale < 0)
+            throw new IllegalArgumentException("Invalid scale: " + maxScale);
+        if (roundingMode == null)
+            throw new IllegalArgumentException("Missing rounding mode");
+        return new MoneyContext(maxScale, roundingMode, null);
+    }
+
+    /**
+     * Returns the context of the current thread.
+     * 
+     * @return active context, {@link #UNLIMITED} if none
+     */
+    public static MoneyContext current() {
+        MoneyContext context = current.get();
+        return context == null ? UNLIMITED : context;
+    }
+
+    private MoneyContext(int maxScale, RoundingMode roundingMode, BigDecimal roundingStep) {
+        this.maxScale = maxScale;
+        this.roundingMode = roundingMode;
+        this.roundingStep = roundingStep;
+    }
+
+    /**
+     * Returns a context which rounds results to multiples of step instead
+     * of the maximum scale. Results keep the maximum scale.
+     * 
+     * @param step
+     *            positive rounding step with at most the maximum scale
+     * 
+     * @return context
+     */
+    public MoneyContext withRoundingStep(BigDecimal step) {
+        if (this == UNLIMITED)
+            throw new IllegalStateException("Unlimited context has no rounding mode");
+        BigDecimal stripped = step.stripTrailingZeros();
+        if (stripped.signum() <= 0 || stripped.scale() > maxScale)
+            throw new IllegalArgumentException("Invalid rounding step: " + step);
+        return new MoneyContext(maxScale, roundingMode, stripped.scale() < 0 ? stripped.setScale(0) : stripped);
+    }
+
+    /**
+     * Makes this the context of the current thread until the returned scope
+     * is closed.
+     * 
+     * @return scope restoring the previous context on close
+     */
+    public Scope activate() {
+        Scope scope = new Scope(current.get());
+        current.set(this);
+        return scope;
+    }
+
+    /**
+     * Returns the maximum scale of results.
+     * 
+     * @return maximum scale, {@link Integer#MAX_VALUE} if unlimited
+     */
+    public int getMaxScale() {
+        return maxScale;
+    }
+
+    /**
+     * Returns the rounding mode.
+     * 
+     * @return rounding mode
+     */
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    /**
+     * Returns the rounding step.
+     * 
+     * @return rounding step, null if none
+     */
+    public BigDecimal getRoundingStep() {
+        return roundingStep;
+    }
+
+    /**
+     * Rounds a value according to this context.
+     * 
+     * @param value
+     *            value
+     * 
+     * @return rounded value
+     */
+    BigDecimal round(BigDecimal value) {
+        if (roundingStep != null)
+            return value.divide(roundingStep, 0, roundingMode).multiply(roundingStep).setScale(maxScale);
+        return value.scale() > maxScale ? value.setScale(maxScale, roundingMode) : value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        if (this == UNLIMITED)
+            return "MoneyContext[unlimited]";
+        return "MoneyContext[maxScale=" + maxScale + ", " + roundingMode
+                + (roundingStep == null ? "" : ", step=" + roundingStep.toPlainString()) + "]";
+    }
+
+    /**
+     * An activated context. Closing restores the previous context of the
+     * thread; scopes must be closed in the thread which activated them.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final MoneyContext previous;
+        private boolean closed;
+
+        private Scope(MoneyContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            if (previous == null)
+                current.remove();
+            else
+                current.set(previous);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Counts amounts by their {@link MoneyKey canonical} value, e.g. to find
+ * duplicate payments or to group amounts.
+ * <p/>
+ * Keys are pairs of currency index and amount in minor currency in an open
+ * addressing table with linear probing over primitive arrays, so counting
+ * does not create objects. Amounts must have an exact value in minor
+ * currency. Instances are not thread-safe.
+ */
+public final class MoneyCounter {
+
+    /**
+     * Largest table length.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Currency index plus one by slot, 0 marks a free slot.
+     */
+    private int[] currencies;
+
+    private long[] minors;
+    private long[] counts;
+    private int size;
+
+    /**
+     * Creates a counter.
+     */
+    public MoneyCounter() {
+        this(16);
+    }
+
+    /**
+     * Creates a counter for the expected number of distinct amounts.
+     * 
+     * @param expectedSize
+     *            expected number of distinct amounts
+     */
+    public MoneyCounter(int expectedSize) {
+        if (expectedSize < 0 || expectedSize > MAX_CAPACITY / 2)
+            throw new IllegalArgumentException("Invalid size: " + expectedSize);
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        currencies = new int[capacity];
+        minors = new long[capacity];
+        counts = new long[capacity];
+    }
+
+    /**
+     * Counts an amount.
+     * 
+     * @param money
+     *            amount
+     * 
+     * @return number of times the amount was counted, 1 on its first count
+     * @throws ArithmeticException
+     *             if the amount has no exact value in minor currency
+     */
+    public long add(Money money) {
+        return add(money.currencyIndex(), minorOf(money), 1);
+    }
+
+    /**
+     * Counts an amount in minor currency.
+     * 
+     * @param minor
+     *            amount in minor currency
+     * @param currency
+     *            currency
+     * 
+     * @return number of times the amount was counted, 1 on its first count
+     * @throws IllegalArgumentException
+     *             if currency is invalid
+     */
+    public long add(long minor, Currency currency) {
+        if (!Money.isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+        return add(CurrencyRegistry.indexOf(currency), minor, 1);
+    }
+
+    /**
+     * Counts all amounts of a column.
+     * 
+     * @param column
+     *            column
+     */
+    public void addAll(MoneyColumn column) {
+        for (int i = 0; i < column.size(); i++)
+            add(column.currencyIndexAt(i), column.minorAt(i), 1);
+    }
+
+    /**
+     * Adds all counts of another counter.
+     * 
+     * @param other
+     *            counter
+     */
+    public void addAll(MoneyCounter other) {
+        for (int slot = 0; slot < other.currencies.length; slot++)
+            if (other.currencies[slot] != 0)
+                add(other.currencies[slot] - 1, other.minors[slot], other.counts[slot]);
+    }
+
+    /**
+     * Returns how often an amount was counted.
+     * 
+     * @param money
+     *            amount
+     * 
+     * @return count, 0 if never counted
+     */
+    public long count(Money money) {
+        long minor;
+        try {
+            minor = minorOf(money);
+        } catch (ArithmeticException e) {
+            return 0;
+        }
+        int slot = find(money.currencyIndex() + 1, minor);
+        return currencies[slot] == 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * Returns how often an amount in minor currency was counted.
+     * 
+     * @param minor
+     *            amount in minor currency
+     * @param currency
+     *            currency
+     * 
+     * @return count, 0 if never counted
+     */
+    public long count(long minor, Currency currency) {
+        int index = CurrencyRegistry.registeredIndexOf(currency);
+        if (index < 0)
+            return 0;
+        int slot = find(index + 1, minor);
+        return currencies[slot] == 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * Determines if an amount was counted.
+     * 
+     * @param money
+     *            amount
+     * 
+     * @return true if the amount was counted
+     */
+    public boolean contains(Money money) {
+        return count(money) > 0;
+    }
+
+    /**
+     * Returns the number of distinct amounts.
+     * 
+     * @return number of distinct amounts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Passes every distinct amount with its count to the consumer, in no
+     * particular order.
+     * 
+     * @param consumer
+     *            consumer
+     */
+    public void forEach(MinorAmountCountConsumer consumer) {
+        for (int slot = 0; slot < currencies.length; slot++)
+            if (currencies[slot] != 0)
+                consumer.accept(CurrencyRegistry.currencyAt(currencies[slot] - 1), minors[slot], counts[slot]);
+    }
+
+    private long add(int currencyIndex, long minor, long count) {
+        int key = currencyIndex + 1;
+        int slot = find(key, minor);
+        if (currencies[slot] == 0) {
+            if ((size + 1) * 2 > currencies.length) {
+                grow();
+                slot = find(key, minor);
+            }
+            currencies[slot] = key;
+            minors[slot] = minor;
+            size++;
+        }
+        return counts[slot] += count;
+    }
+
+    private int find(int key, long minor) {
+        int mask = currencies.length - 1;
+        int slot = MoneyKey.hash(key, minor) & mask;
+        while (currencies[slot] != 0 && (currencies[slot] != key || minors[slot] != minor))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        if (currencies.length == MAX_CAPACITY)
+            throw new IllegalStateException("Counter full");
+        int[] oldCurrencies = currencies;
+        long[] oldMinors = minors;
+        long[] oldCounts = counts;
+        currencies = new int[oldCurrencies.length * 2];
+        minors = new long[oldCurrencies.length * 2];
+        counts = new long[oldCurrencies.length * 2];
+        for (int slot = 0; slot < oldCurrencies.length; slot++) {
+            if (oldCurrencies[slot] != 0) {
+                int target = find(oldCurrencies[slot], oldMinors[slot]);
+                currencies[target] = oldCurrencies[slot];
+                minors[target] = oldMinors[slot];
+                counts[target] = oldCounts[slot];
+            }
+        }
+    }
+
+    private static long minorOf(Money money) {
+        BigDecimal amount = money.getAmount();
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(money.currencyIndex());
+        if (MinorUnits.fitsMinor(amount, fractionDigits))
+            return MinorUnits.toMinor(amount, fractionDigits);
+        return amount.movePointRight(fractionDigits).longValueExact();
+    }
+
+    /**
+     * Receives an amount in minor currency with its count.
+     */
+    public interface MinorAmountCountConsumer {
+
+        /**
+         * Receives an amount.
+         * 
+         * @param currency
+         *            currency
+         * @param minor
+         *            amount in minor currency
+         * @param count
+         *            number of times the amount was counted
+         */
+        void accept(Currency currency, long minor, long count);
+    }
+}
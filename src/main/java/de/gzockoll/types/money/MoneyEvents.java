@@ -0,0 +1,133 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR events of slow Money operations, only started while a flight
+ * recording enables them. Huge-scale multiplications are also counted while
+ * {@link MoneyMetrics} are enabled.
+ */
+final class MoneyEvents {
+
+    /**
+     * Type of {@link Multiply}, checked before an event is allocated.
+     */
+    private static final EventType MULTIPLY = EventType.getEventType(Multiply.class);
+
+    /**
+     * Type of {@link ValidationMiss}, checked before an event is allocated.
+     */
+    private static final EventType VALIDATION_MISS = EventType.getEventType(ValidationMiss.class);
+
+    private MoneyEvents() {
+    }
+
+    /**
+     * Starts timing a multiplication.
+     * 
+     * @return started event, null if neither the event nor metrics are
+     *         enabled
+     */
+    static Multiply beginMultiply() {
+        if (!MULTIPLY.isEnabled() && !MoneyMetrics.isEnabled())
+            return null;
+        Multiply event = new Multiply();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Starts timing a validity check which missed the cache.
+     * 
+     * @return started event, null if the event is disabled
+     */
+    static ValidationMiss beginValidationMiss() {
+        if (!VALIDATION_MISS.isEnabled())
+            return null;
+        ValidationMiss event = new ValidationMiss();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * A multiplication with a result scale above
+     * {@link MoneyMetrics#HUGE_SCALE}.
+     */
+    @Name("de.gzockoll.types.money.HugeScaleMultiply")
+    @Label("Huge Scale Multiply")
+    @Category("Money")
+    @Description("Money multiplication with a result scale above the configured threshold")
+    static final class Multiply extends Event {
+        @Label("Currency")
+        String currency;
+
+        @Label("Result Scale")
+        int scale;
+
+        @Label("Result Precision")
+        int precision;
+
+        /**
+         * Commits the event if the result scale is huge.
+         * 
+         * @param currencyCode
+         *            currency code
+         * @param result
+         *            result
+         */
+        void end(String currencyCode, BigDecimal result) {
+            if (result.scale() <= MoneyMetrics.HUGE_SCALE)
+                return;
+            if (MoneyMetrics.isEnabled())
+                MoneyMetrics.increment(MoneyMetrics.Counter.HUGE_SCALE_RESULTS);
+            if (!isEnabled())
+                return;
+            end();
+            if (shouldCommit()) {
+                currency = currencyCode;
+                scale = result.scale();
+                precision = result.precision();
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A currency validity check computed by ICU.
+     */
+    @Name("de.gzockoll.types.money.ValidationMiss")
+    @Label("Currency Validation Miss")
+    @Category("Money")
+    @Description("Currency validity check which was not answered by the cache")
+    static final class ValidationMiss extends Event {
+        @Label("Currency")
+        String currency;
+
+        @Label("Valid")
+        boolean valid;
+
+        /**
+         * Commits the event.
+         * 
+         * @param currencyCode
+         *            currency code
+         * @param result
+         *            validity
+         */
+        void end(String currencyCode, boolean result) {
+            end();
+            if (shouldCommit()) {
+                currency = currencyCode;
+                valid = result;
+                commit();
+            }
+        }
+    }
+}
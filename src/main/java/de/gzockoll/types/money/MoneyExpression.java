@@ -0,0 +1,293 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * An immutable formula on amounts of one currency, e.g. a fee formula.
+ * <p/>
+ * The operations are not applied when the formula is built but fused into
+ * the form x * factor + offset, so evaluation computes exactly and rounds
+ * once to the fraction digits of the currency, half up unless configured
+ * otherwise. The result equals the unrounded chain of the same Money
+ * operations followed by {@link Money#scaled()}. Currencies are checked
+ * while building and when evaluating; an expression can be evaluated for
+ * any number of values, also in minor currency without creating Money.
+ * <p/>
+ * In minor currency the formula is minor * numerator + scaledOffset,
+ * divided by 10^scale with one rounding; if the parts do not fit into a
+ * long, values are evaluated with BigDecimal.
+ */
+public final class MoneyExpression {
+
+    private final int currencyIndex;
+    private final BigDecimal factor;
+    private final BigDecimal offset;
+    private final RoundingMode mode;
+
+    /**
+     * The factor times {@link #denominator}, valid if {@link #fast}.
+     */
+    private final long numerator;
+
+    /**
+     * The offset in minor currency times {@link #denominator}, valid if
+     * {@link #fast}.
+     */
+    private final long scaledOffset;
+
+    /**
+     * The power of ten which numerator and scaledOffset are divided by.
+     */
+    private final long denominator;
+
+    /**
+     * If values in minor currency can be evaluated with long arithmetic.
+     */
+    private final boolean fast;
+
+    /**
+     * Returns the identity formula for the currency.
+     * 
+     * @param currency
+     *            currency
+     * 
+     * @return expression
+     * @throws IllegalArgumentException
+     *             if currency is invalid
+     */
+    public static MoneyExpression of(Currency currency) {
+        if (!Money.isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+        return new MoneyExpression(CurrencyRegistry.indexOf(currency), BigDecimal.ONE, BigDecimal.ZERO,
+                RoundingMode.HALF_UP);
+    }
+
+    private MoneyExpression(int currencyIndex, BigDecimal factor, BigDecimal offset, RoundingMode mode) {
+        this.currencyIndex = currencyIndex;
+        this.factor = factor;
+        this.offset = offset;
+        this.mode = mode;
+        BigDecimal minorOffset = offset.movePointRight(CurrencyRegistry.fractionDigitsAt(currencyIndex));
+        int scale = Math.max(0, Math.max(factor.scale(), minorOffset.scale()));
+        long numerator = 0;
+        long scaledOffset = 0;
+        boolean fast = scale < 19;
+        if (fast) {
+            try {
+                numerator = factor.setScale(scale).unscaledValue().longValueExact();
+                scaledOffset = minorOffset.setScale(scale).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                fast = false;
+            }
+        }
+        this.numerator = numerator;
+        this.scaledOffset = scaledOffset;
+        this.denominator = fast ? MinorUnits.powerOfTen(scale) : 1;
+        this.fast = fast;
+    }
+
+    /**
+     * Multiplies with a factor.
+     * 
+     * @param factor
+     *            factor
+     * 
+     * @return expression
+     */
+    public MoneyExpression multiply(BigDecimal factor) {
+        return new MoneyExpression(currencyIndex, this.factor.multiply(factor), offset.multiply(factor), mode);
+    }
+
+    /**
+     * Multiplies with a factor. The factor is used with the digits of its
+     * shortest decimal representation like {@link Money#multiply(double)}.
+     * 
+     * @param factor
+     *            factor
+     * 
+     * @return expression
+     */
+    public MoneyExpression multiply(double factor) {
+        return multiply(BigDecimal.valueOf(factor));
+    }
+
+    /**
+     * Adds an amount.
+     * 
+     * @param other
+     *            amount with the currency of this expression
+     * 
+     * @return expression
+     * @throws IllegalArgumentException
+     *             if the currencies differ
+     */
+    public MoneyExpression add(Money other) {
+        assertSameCurrencyAs(other);
+        return new MoneyExpression(currencyIndex, factor, offset.add(other.getAmount()), mode);
+    }
+
+    /**
+     * Subtracts an amount.
+     * 
+     * @param other
+     *            amount with the currency of this expression
+     * 
+     * @return expression
+     * @throws IllegalArgumentException
+     *             if the currencies differ
+     */
+    public MoneyExpression subtract(Money other) {
+        assertSameCurrencyAs(other);
+        return new MoneyExpression(currencyIndex, factor, offset.subtract(other.getAmount()), mode);
+    }
+
+    /**
+     * Negates the result.
+     * 
+     * @return expression
+     */
+    public MoneyExpression negate() {
+        return new MoneyExpression(currencyIndex, factor.negate(), offset.negate(), mode);
+    }
+
+    /**
+     * Sets the mode of the final rounding.
+     * 
+     * @param mode
+     *            rounding mode
+     * 
+     * @return expression
+     */
+    public MoneyExpression rounding(RoundingMode mode) {
+        return new MoneyExpression(currencyIndex, factor, offset, mode);
+    }
+
+    /**
+     * Returns the currency.
+     * 
+     * @return currency
+     */
+    public Currency getCurrency() {
+        return CurrencyRegistry.currencyAt(currencyIndex);
+    }
+
+    /**
+     * Returns the fused factor.
+     * 
+     * @return factor
+     */
+    public BigDecimal getFactor() {
+        return factor;
+    }
+
+    /**
+     * Returns the fused offset in major currency.
+     * 
+     * @return offset
+     */
+    public BigDecimal getOffset() {
+        return offset;
+    }
+
+    /**
+     * Evaluates the formula.
+     * 
+     * @param value
+     *            amount with the currency of this expression
+     * 
+     * @return rounded result
+     * @throws IllegalArgumentException
+     *             if the currencies differ
+     */
+    public Money evaluate(Money value) {
+        assertSameCurrencyAs(value);
+        BigDecimal amount = value.getAmount();
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(currencyIndex);
+        if (fast && MinorUnits.fitsMinor(amount, fractionDigits))
+            return Money.fromMinor(evaluateMinor(MinorUnits.toMinor(amount, fractionDigits)), currencyIndex);
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+        return new Money(amount.multiply(factor).add(offset).setScale(fractionDigits, mode), getCurrency());
+    }
+
+    /**
+     * Evaluates the formula for an array of amounts.
+     * 
+     * @param values
+     *            amounts with the currency of this expression
+     * 
+     * @return rounded results
+     * @throws IllegalArgumentException
+     *             if a currency differs
+     */
+    public Money[] evaluate(Money[] values) {
+        Money[] results = new Money[values.length];
+        for (int i = 0; i < values.length; i++)
+            results[i] = evaluate(values[i]);
+        return results;
+    }
+
+    /**
+     * Evaluates the formula for an amount in minor currency.
+     * 
+     * @param minor
+     *            amount in minor currency
+     * 
+     * @return rounded result in minor currency
+     * @throws ArithmeticException
+     *             if the result does not fit into a long
+     */
+    public long evaluateMinor(long minor) {
+        if (fast && ((Math.abs(minor) | Math.abs(numerator)) >>> 31) == 0) {
+            long product = minor * numerator;
+            long sum = product + scaledOffset;
+            if (((product ^ sum) & (scaledOffset ^ sum)) >= 0)
+                return MinorUnits.divide(sum, denominator, mode);
+        }
+        return evaluateExact(minor);
+    }
+
+    /**
+     * Evaluates the formula for amounts in minor currency.
+     * 
+     * @param minors
+     *            amounts in minor currency
+     * @param results
+     *            receives the rounded results in minor currency, may be
+     *            minors
+     * @param length
+     *            number of amounts
+     * 
+     * @throws ArithmeticException
+     *             if a result does not fit into a long
+     */
+    public void evaluateMinor(long[] minors, long[] results, int length) {
+        for (int i = 0; i < length; i++)
+            results[i] = evaluateMinor(minors[i]);
+    }
+
+    /**
+     * Evaluates the formula with BigDecimal.
+     */
+    private long evaluateExact(long minor) {
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(currencyIndex);
+        return BigDecimal.valueOf(minor).multiply(factor).add(offset.movePointRight(fractionDigits)).setScale(0,
+                mode).longValueExact();
+    }
+
+    private void assertSameCurrencyAs(Money arg) {
+        if (arg.currencyIndex() != currencyIndex)
+            throw new IllegalArgumentException("money math mismatch");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "x * " + factor + " + " + offset + " " + getCurrency();
+    }
+}
@@ -0,0 +1,225 @@
+package de.gzockoll.types.money;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Formats amounts of one currency for one locale.
+ * <p/>
+ * The affixes, separators and grouping are taken once from the locale's
+ * {@link DecimalFormat} and cached. Instances are immutable and can be
+ * shared between threads. Amounts are formatted exactly from minor units or
+ * BigDecimal; amounts with more fraction digits than the currency are
+ * rounded half even like {@link DecimalFormat}, whose output is matched.
+ */
+public final class MoneyFormat {
+
+    /**
+     * Cached instances by locale and currency code.
+     */
+    private static final ConcurrentMap<Locale, ConcurrentMap<String, MoneyFormat>> instances = new ConcurrentHashMap<>();
+
+    private final String positivePrefix;
+    private final String positiveSuffix;
+    private final String negativePrefix;
+    private final String negativeSuffix;
+    private final char decimalSeparator;
+    private final char groupingSeparator;
+    private final char zeroDigit;
+    private final int groupingSize;
+    private final int fractionDigits;
+
+    /**
+     * Returns the format for the locale and currency.
+     * 
+     * @param locale
+     *            locale
+     * @param currency
+     *            currency
+     * 
+     * @return shared format instance
+     */
+    public static MoneyFormat getInstance(Locale locale, Currency currency) {
+        ConcurrentMap<String, MoneyFormat> byCurrency = instances.get(locale);
+        if (byCurrency == null)
+            byCurrency = instances.computeIfAbsent(locale, l -> new ConcurrentHashMap<>());
+        MoneyFormat format = byCurrency.get(currency.getCurrencyCode());
+        if (format == null)
+            format = byCurrency.computeIfAbsent(currency.getCurrencyCode(), c -> new MoneyFormat(locale, currency));
+        return format;
+    }
+
+    private MoneyFormat(Locale locale, Currency currency) {
+        DecimalFormat format = (DecimalFormat) NumberFormat.getCurrencyInstance(locale);
+        DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+        try {
+            symbols.setCurrency(java.util.Currency.getInstance(currency.getCurrencyCode()));
+        } catch (IllegalArgumentException e) {
+            symbols.setCurrencySymbol(currency.getSymbol(locale));
+            symbols.setInternationalCurrencySymbol(currency.getCurrencyCode());
+        }
+        format.setDecimalFormatSymbols(symbols);
+        positivePrefix = format.getPositivePrefix();
+        positiveSuffix = format.getPositiveSuffix();
+        negativePrefix = format.getNegativePrefix();
+        negativeSuffix = format.getNegativeSuffix();
+        decimalSeparator = symbols.getMonetaryDecimalSeparator();
+        groupingSeparator = symbols.getGroupingSeparator();
+        zeroDigit = symbols.getZeroDigit();
+        groupingSize = format.isGroupingUsed() ? format.getGroupingSize() : 0;
+        fractionDigits = currency.getDefaultFractionDigits();
+    }
+
+    /**
+     * Formats the amount.
+     * 
+     * @param money
+     *            amount, its currency should be the currency of this format
+     * 
+     * @return formatted amount
+     */
+    public String format(Money money) {
+        return format(money.getAmount(), new StringBuilder(32)).toString();
+    }
+
+    /**
+     * Formats the amount into a StringBuilder.
+     * 
+     * @param amount
+     *            amount in major currency
+     * @param target
+     *            receives the formatted amount
+     * 
+     * @return target
+     */
+    public StringBuilder format(BigDecimal amount, StringBuilder target) {
+        try {
+            format(amount, (Appendable) target);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return target;
+    }
+
+    /**
+     * Formats the amount in minor currency into a StringBuilder.
+     * 
+     * @param minor
+     *            amount in minor currency
+     * @param target
+     *            receives the formatted amount
+     * 
+     * @return target
+     */
+    public StringBuilder formatMinor(long minor, StringBuilder target) {
+        try {
+            formatMinor(minor, (Appendable) target);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return target;
+    }
+
+    /**
+     * Formats the amount.
+     * 
+     * @param amount
+     *            amount in major currency
+     * @param target
+     *            receives the formatted amount
+     * 
+     * @throws IOException
+     *             if target fails
+     */
+    public void format(BigDecimal amount, Appendable target) throws IOException {
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.FORMATS);
+        boolean negative = amount.signum() < 0;
+        BigDecimal rounded = amount.scale() == fractionDigits ? amount : amount.setScale(fractionDigits,
+                RoundingMode.HALF_EVEN);
+        if (MinorUnits.fitsMinor(rounded, fractionDigits)) {
+            formatMinor(Math.abs(MinorUnits.toMinor(rounded, fractionDigits)), negative, target);
+            return;
+        }
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+        target.append(negative ? negativePrefix : positivePrefix);
+        appendDigits(rounded.unscaledValue().abs().toString(), target);
+        target.append(negative ? negativeSuffix : positiveSuffix);
+    }
+
+    /**
+     * Formats the amount in minor currency.
+     * 
+     * @param minor
+     *            amount in minor currency
+     * @param target
+     *            receives the formatted amount
+     * 
+     * @throws IOException
+     *             if target fails
+     */
+    public void formatMinor(long minor, Appendable target) throws IOException {
+        if (minor == Long.MIN_VALUE) {
+            format(BigDecimal.valueOf(minor, fractionDigits), target);
+            return;
+        }
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.FORMATS);
+        formatMinor(Math.abs(minor), minor < 0, target);
+    }
+
+    /**
+     * Formats an unsigned amount in minor currency. Like DecimalFormat, the
+     * sign is that of the unrounded amount.
+     */
+    private void formatMinor(long digits, boolean negative, Appendable target) throws IOException {
+        int length = 1;
+        while (length < 19 && digits >= MinorUnits.powerOfTen(length))
+            length++;
+        int integerDigits = Math.max(length - fractionDigits, 1);
+        target.append(negative ? negativePrefix : positivePrefix);
+        for (int position = integerDigits + fractionDigits - 1; position >= 0; position--) {
+            appendSeparator(position, integerDigits, target);
+            target.append((char) (zeroDigit + digits / MinorUnits.powerOfTen(position) % 10));
+        }
+        target.append(negative ? negativeSuffix : positiveSuffix);
+    }
+
+    /**
+     * Appends unsigned digits of an amount in minor currency.
+     */
+    private void appendDigits(String digits, Appendable target) throws IOException {
+        int length = Math.max(digits.length(), fractionDigits + 1);
+        int integerDigits = length - fractionDigits;
+        for (int position = length - 1; position >= 0; position--) {
+            appendSeparator(position, integerDigits, target);
+            int index = digits.length() - 1 - position;
+            target.append((char) (zeroDigit + (index < 0 ? 0 : digits.charAt(index) - '0')));
+        }
+    }
+
+    /**
+     * Appends the decimal or grouping separator which precedes the digit at
+     * position, counted from the least significant digit.
+     */
+    private void appendSeparator(int position, int integerDigits, Appendable target) throws IOException {
+        if (fractionDigits > 0 && position == fractionDigits - 1) {
+            target.append(decimalSeparator);
+            return;
+        }
+        int integerPosition = position - fractionDigits;
+        if (groupingSize > 0 && integerPosition >= 0 && integerPosition + 1 < integerDigits
+                && (integerPosition + 1) % groupingSize == 0)
+            target.append(groupingSeparator);
+    }
+}
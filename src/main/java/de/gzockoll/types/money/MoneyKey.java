@@ -0,0 +1,154 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * The canonical form of an amount for hashing and comparing, e.g. as key
+ * of a map.
+ * <p/>
+ * Unlike {@link Money#equals(Object)}, keys do not depend on the scale of
+ * the amount: 1.0 EUR and 1.00 EUR have the same key. Amounts are held in
+ * minor currency; only amounts with non-zero digits beyond the currency's
+ * fraction digits keep a BigDecimal. The hash code is computed once.
+ */
+public final class MoneyKey {
+
+    private final int currencyIndex;
+    private final long minor;
+
+    /**
+     * The amount without trailing zeros if it has no exact minor value,
+     * otherwise null.
+     */
+    private final BigDecimal exact;
+
+    private final int hash;
+
+    /**
+     * Returns the key of an amount.
+     * 
+     * @param money
+     *            amount
+     * 
+     * @return key
+     */
+    public static MoneyKey of(Money money) {
+        int index = money.currencyIndex();
+        BigDecimal amount = money.getAmount();
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(index);
+        if (MinorUnits.fitsMinor(amount, fractionDigits))
+            return new MoneyKey(index, MinorUnits.toMinor(amount, fractionDigits), null);
+        try {
+            return new MoneyKey(index, amount.movePointRight(fractionDigits).longValueExact(), null);
+        } catch (ArithmeticException e) {
+            return new MoneyKey(index, 0, amount.stripTrailingZeros());
+        }
+    }
+
+    /**
+     * Returns the key of an amount in minor currency.
+     * 
+     * @param minor
+     *            amount in minor currency
+     * @param currency
+     *            currency
+     * 
+     * @return key
+     */
+    public static MoneyKey of(long minor, Currency currency) {
+        if (!Money.isCurrencyValid(currency))
+            throw new IllegalArgumentException("Invalid currency: " + currency);
+        return new MoneyKey(CurrencyRegistry.indexOf(currency), minor, null);
+    }
+
+    private MoneyKey(int currencyIndex, long minor, BigDecimal exact) {
+        this.currencyIndex = currencyIndex;
+        this.minor = minor;
+        this.exact = exact;
+        this.hash = exact == null ? hash(currencyIndex, minor) : 31 * currencyIndex + exact.hashCode();
+    }
+
+    /**
+     * Returns the currency.
+     * 
+     * @return currency
+     */
+    public Currency getCurrency() {
+        return CurrencyRegistry.currencyAt(currencyIndex);
+    }
+
+    /**
+     * Determines if the amount has an exact value in minor currency.
+     * 
+     * @return true if {@link #getMinor()} is exact
+     */
+    public boolean isMinor() {
+        return exact == null;
+    }
+
+    /**
+     * Returns the amount in minor currency.
+     * 
+     * @return amount in minor currency
+     * @throws ArithmeticException
+     *             if the amount has no exact minor value
+     */
+    public long getMinor() {
+        if (exact != null)
+            throw new ArithmeticException("Rounding necessary");
+        return minor;
+    }
+
+    /**
+     * Returns the amount with the fraction digits of the currency, or more
+     * if needed.
+     * 
+     * @return Money instance
+     */
+    public Money toMoney() {
+        if (exact == null)
+            return Money.fromMinor(minor, currencyIndex);
+        return new Money(exact, getCurrency());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof MoneyKey))
+            return false;
+        MoneyKey other = (MoneyKey) obj;
+        if (hash != other.hash || currencyIndex != other.currencyIndex || minor != other.minor)
+            return false;
+        return exact == null ? other.exact == null : exact.equals(other.exact);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return toMoney().toString();
+    }
+
+    /**
+     * Hashes a currency index and an amount in minor currency.
+     * 
+     * @param currencyIndex
+     *            currency index
+     * @param minor
+     *            amount in minor currency
+     * 
+     * @return well distributed hash
+     */
+    static int hash(int currencyIndex, long minor) {
+        long h = (minor + currencyIndex * 0xC2B2AE3D27D4EB4FL) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+}
@@ -0,0 +1,142 @@
+package de.gzockoll.types.money;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MutableCallSite;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional counters of Money operations.
+ * <p/>
+ * Metrics are initially enabled by the system property
+ * <code>de.gzockoll.types.money.metrics=true</code> and can be switched at
+ * runtime by {@link #setEnabled(boolean)}. The flag is held by a
+ * {@link MutableCallSite}, so the JIT treats it as a constant and removes the
+ * instrumentation from the hot paths while metrics are disabled; switching
+ * deoptimizes the dependent code. Counters are {@link LongAdder}s. Slow
+ * operations are reported as JFR events (see {@link MoneyEvents})
+ * independently, whenever a flight recording enables them.
+ */
+public final class MoneyMetrics {
+
+    private static final MutableCallSite SWITCH = new MutableCallSite(
+            MethodHandles.constant(boolean.class, Boolean.getBoolean("de.gzockoll.types.money.metrics")));
+
+    private static final MethodHandle ENABLED = SWITCH.dynamicInvoker();
+
+    /**
+     * Results with a larger scale are reported as huge-scale operations,
+     * configured by the system property
+     * <code>de.gzockoll.types.money.metrics.hugeScale</code>.
+     */
+    static final int HUGE_SCALE = Integer.getInteger("de.gzockoll.types.money.metrics.hugeScale", 32);
+
+    /**
+     * The counted events.
+     */
+    public enum Counter {
+        /**
+         * Money instances created, not counting cached instances.
+         */
+        CONSTRUCTIONS,
+        /**
+         * Currency validity checks.
+         */
+        VALIDATIONS,
+        /**
+         * Currency validity checks answered from the cache.
+         */
+        VALIDATION_CACHE_HITS,
+        /**
+         * Operations rejected because of different currencies.
+         */
+        CURRENCY_MISMATCHES,
+        /**
+         * Operations which left the minor unit fast path for BigDecimal.
+         */
+        BIG_DECIMAL_FALLBACKS,
+        /**
+         * Amounts formatted.
+         */
+        FORMATS,
+        /**
+         * Results with a scale above the huge-scale threshold.
+         */
+        HUGE_SCALE_RESULTS;
+
+        private final LongAdder count = new LongAdder();
+    }
+
+    private MoneyMetrics() {
+    }
+
+    /**
+     * Determines if metrics are collected.
+     * 
+     * @return true if enabled
+     */
+    public static boolean isEnabled() {
+        try {
+            return (boolean) ENABLED.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Switches metrics on or off. Counters keep their values.
+     * 
+     * @param enabled
+     *            true to collect metrics
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled == isEnabled())
+            return;
+        SWITCH.setTarget(MethodHandles.constant(boolean.class, enabled));
+        MutableCallSite.syncAll(new MutableCallSite[] { SWITCH });
+    }
+
+    /**
+     * Returns the current value of a counter.
+     * 
+     * @param counter
+     *            counter
+     * 
+     * @return count, which does not change while metrics are disabled
+     */
+    public static long get(Counter counter) {
+        return counter.count.sum();
+    }
+
+    /**
+     * Returns the current values of all counters.
+     * 
+     * @return counts by counter
+     */
+    public static Map<Counter, Long> snapshot() {
+        Map<Counter, Long> result = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values())
+            result.put(counter, counter.count.sum());
+        return result;
+    }
+
+    /**
+     * Resets all counters to 0.
+     */
+    public static void reset() {
+        for (Counter counter : Counter.values())
+            counter.count.reset();
+    }
+
+    /**
+     * Increments a counter. Callers check {@link #isEnabled()} first.
+     * 
+     * @param counter
+     *            counter
+     */
+    static void increment(Counter counter) {
+        counter.count.increment();
+    }
+}
@@ -0,0 +1,36 @@
+package de.gzockoll.types.money;
+
+/**
+ * Thrown if a text can not be parsed as money.
+ */
+public class MoneyParseException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Position of the error in the input.
+     */
+    private final int errorOffset;
+
+    /**
+     * Creates a new MoneyParseException.
+     * 
+     * @param message
+     *            description of the error
+     * @param errorOffset
+     *            position of the error in the input
+     */
+    public MoneyParseException(String message, int errorOffset) {
+        super(message + " at position " + errorOffset);
+        this.errorOffset = errorOffset;
+    }
+
+    /**
+     * Returns the position of the error in the input.
+     * 
+     * @return position of the error
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+}
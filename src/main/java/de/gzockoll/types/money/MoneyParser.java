@@ -0,0 +1,516 @@
+package de.gzockoll.types.money;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Parses money from text.
+ * <p/>
+ * Accepts the form written by {@link Money#toString()}, e.g.
+ * <code>12.34 EUR</code>, and the ISO code first form, e.g.
+ * <code>EUR 12.34</code>. The amount has an optional sign, at least one
+ * digit, an optional fraction with '.' as decimal separator and an optional
+ * exponent like <code>E-7</code>, as written by BigDecimal. The amount
+ * keeps its scale, so <code>1.0 EUR</code> is parsed to 1.0, not 1.00.
+ * Amounts with up to 18 digits are parsed without creating strings, and
+ * amounts with as many fraction digits as the currency directly into minor
+ * units without creating BigDecimals.
+ * <p/>
+ * Instances keep the currency of the last parsed value and are not
+ * thread-safe; use one instance per thread.
+ */
+public final class MoneyParser {
+
+    /**
+     * {@link CurrencyRegistry} index plus one by the index of the three
+     * letter code of valid currencies, 0 if not yet looked up or invalid.
+     */
+    private static final AtomicIntegerArray currencyIndexes = new AtomicIntegerArray(26 * 26 * 26);
+
+    /**
+     * Largest absolute exponent of an amount in exponent notation.
+     */
+    private static final int MAX_EXPONENT = 9999;
+
+    /**
+     * Reusable view on byte buffers.
+     */
+    private final AsciiSequence asciiSequence = new AsciiSequence();
+
+    /**
+     * Reusable view on char arrays.
+     */
+    private final CharArraySequence charArraySequence = new CharArraySequence();
+
+    /**
+     * {@link CurrencyRegistry} index of the currency of the last parsed
+     * value.
+     */
+    private int currencyIndex;
+
+    /**
+     * Digits of the last parsed amount without decimal separator.
+     */
+    private long unscaled;
+
+    /**
+     * Number of fraction digits of the last parsed amount.
+     */
+    private int scale;
+
+    /**
+     * True if the last parsed amount does not fit into unscaled.
+     */
+    private boolean tooLong;
+
+    /**
+     * Start and end of the last parsed amount.
+     */
+    private int amountStart;
+    private int amountEnd;
+
+    /**
+     * Parses money. The amount is kept exactly, with the scale it is written
+     * with.
+     * 
+     * @param text
+     *            text
+     * 
+     * @return parsed money
+     * @throws MoneyParseException
+     *             if the text is not valid
+     */
+    public Money parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses money from a part of a CharSequence.
+     * 
+     * @param text
+     *            text
+     * @param start
+     *            start index, inclusive
+     * @param end
+     *            end index, exclusive
+     * 
+     * @return parsed money
+     * @throws MoneyParseException
+     *             if the text is not valid
+     */
+    public Money parse(CharSequence text, int start, int end) {
+        scan(text, start, end);
+        if (!tooLong) {
+            if (scale == CurrencyRegistry.fractionDigitsAt(currencyIndex))
+                return Money.fromMinor(unscaled, currencyIndex);
+            return new Money(BigDecimal.valueOf(unscaled, scale), getCurrency());
+        }
+        if (MoneyMetrics.isEnabled())
+            MoneyMetrics.increment(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS);
+        return new Money(new BigDecimal(text.subSequence(amountStart, amountEnd).toString()), getCurrency());
+    }
+
+    /**
+     * Parses money from ASCII bytes between position and limit of the
+     * buffer. The position of the buffer is not changed.
+     * 
+     * @param buffer
+     *            buffer
+     * 
+     * @return parsed money
+     * @throws MoneyParseException
+     *             if the text is not valid
+     */
+    public Money parse(ByteBuffer buffer) {
+        try {
+            return parse(asciiSequence.wrap(buffer), buffer.position(), buffer.limit());
+        } finally {
+            asciiSequence.wrap(null);
+        }
+    }
+
+    /**
+     * Parses money from a char array.
+     * 
+     * @param text
+     *            text
+     * @param offset
+     *            index of the first char
+     * @param length
+     *            number of chars
+     * 
+     * @return parsed money
+     * @throws MoneyParseException
+     *             if the text is not valid
+     */
+    public Money parse(char[] text, int offset, int length) {
+        try {
+            return parse(charArraySequence.wrap(text), offset, offset + length);
+        } finally {
+            charArraySequence.wrap(null);
+        }
+    }
+
+    /**
+     * Parses an amount in minor currency. The currency is available from
+     * {@link #getCurrency()} afterwards.
+     * 
+     * @param text
+     *            text
+     * @param start
+     *            start index, inclusive
+     * @param end
+     *            end index, exclusive
+     * 
+     * @return amount in minor currency
+     * @throws MoneyParseException
+     *             if the text is not valid or the amount has more fraction
+     *             digits than the currency
+     */
+    public long parseMinor(CharSequence text, int start, int end) {
+        scan(text, start, end);
+        return minor();
+    }
+
+    /**
+     * Parses an amount in minor currency from a char array.
+     * 
+     * @param text
+     *            text
+     * @param offset
+     *            index of the first char
+     * @param length
+     *            number of chars
+     * 
+     * @return amount in minor currency
+     * @throws MoneyParseException
+     *             if the text is not valid or the amount has more fraction
+     *             digits than the currency
+     */
+    public long parseMinor(char[] text, int offset, int length) {
+        try {
+            return parseMinor(charArraySequence.wrap(text), offset, offset + length);
+        } finally {
+            charArraySequence.wrap(null);
+        }
+    }
+
+    /**
+     * Parses an amount in minor currency from ASCII bytes between position
+     * and limit of the buffer. The position of the buffer is not changed.
+     * 
+     * @param buffer
+     *            buffer
+     * 
+     * @return amount in minor currency
+     * @throws MoneyParseException
+     *             if the text is not valid or the amount has more fraction
+     *             digits than the currency
+     */
+    public long parseMinor(ByteBuffer buffer) {
+        try {
+            return parseMinor(asciiSequence.wrap(buffer), buffer.position(), buffer.limit());
+        } finally {
+            asciiSequence.wrap(null);
+        }
+    }
+
+    /**
+     * Parses an amount and currency in minor currency from ASCII bytes
+     * between start and end of the buffer.
+     * 
+     * @param buffer
+     *            buffer
+     * @param start
+     *            start index, inclusive
+     * @param end
+     *            end index, exclusive
+     * 
+     * @return amount in minor currency
+     * @throws MoneyParseException
+     *             if the text is not valid or the amount has more fraction
+     *             digits than the currency
+     */
+    long parseMinor(ByteBuffer buffer, int start, int end) {
+        try {
+            return parseMinor(asciiSequence.wrap(buffer), start, end);
+        } finally {
+            asciiSequence.wrap(null);
+        }
+    }
+
+    /**
+     * Parses an amount without currency in minor units of the currency from
+     * ASCII bytes between start and end of the buffer.
+     * 
+     * @param buffer
+     *            buffer
+     * @param start
+     *            start index, inclusive
+     * @param end
+     *            end index, exclusive
+     * @param currencyIndex
+     *            {@link CurrencyRegistry} index of the currency
+     * 
+     * @return amount in minor currency
+     * @throws MoneyParseException
+     *             if the text is not valid or the amount has more fraction
+     *             digits than the currency
+     */
+    long parseAmountMinor(ByteBuffer buffer, int start, int end, int currencyIndex) {
+        try {
+            CharSequence text = asciiSequence.wrap(buffer);
+            int i = skipSpaces(text, scanAmount(text, skipSpaces(text, start, end), end), end);
+            if (i != end)
+                throw new MoneyParseException("Unexpected character '" + text.charAt(i) + "'", i);
+            this.currencyIndex = currencyIndex;
+            return minor();
+        } finally {
+            asciiSequence.wrap(null);
+        }
+    }
+
+    /**
+     * Parses a three letter ISO code from ASCII bytes between start and end
+     * of the buffer.
+     * 
+     * @param buffer
+     *            buffer
+     * @param start
+     *            start index, inclusive
+     * @param end
+     *            end index, exclusive
+     * 
+     * @return {@link CurrencyRegistry} index of the currency
+     * @throws MoneyParseException
+     *             if the text is not a valid currency
+     */
+    int parseCurrencyIndex(ByteBuffer buffer, int start, int end) {
+        try {
+            CharSequence text = asciiSequence.wrap(buffer);
+            int i = skipSpaces(text, start, end);
+            int index = scanCurrency(text, i, end);
+            i = skipSpaces(text, i + 3, end);
+            if (i != end)
+                throw new MoneyParseException("Unexpected character '" + text.charAt(i) + "'", i);
+            return index;
+        } finally {
+            asciiSequence.wrap(null);
+        }
+    }
+
+    /**
+     * Returns the currency of the last parsed value.
+     * 
+     * @return currency
+     */
+    public Currency getCurrency() {
+        return CurrencyRegistry.currencyAt(currencyIndex);
+    }
+
+    /**
+     * Returns the {@link CurrencyRegistry} index of the currency of the last
+     * parsed value.
+     * 
+     * @return currency index
+     */
+    int currencyIndex() {
+        return currencyIndex;
+    }
+
+    /**
+     * Returns the last parsed amount in minor units of its currency.
+     */
+    private long minor() {
+        int fractionDigits = CurrencyRegistry.fractionDigitsAt(currencyIndex);
+        if (scale > fractionDigits)
+            throw new MoneyParseException("Too many fraction digits for " + getCurrency(), amountStart);
+        if (!fitsMinor(fractionDigits))
+            throw new MoneyParseException("Amount too large", amountStart);
+        return toMinor(fractionDigits);
+    }
+
+    private boolean fitsMinor(int fractionDigits) {
+        return !tooLong && scale <= fractionDigits && fractionDigits - scale < 19
+                && Math.abs(unscaled) <= Long.MAX_VALUE / MinorUnits.powerOfTen(fractionDigits - scale);
+    }
+
+    private long toMinor(int fractionDigits) {
+        return unscaled * MinorUnits.powerOfTen(fractionDigits - scale);
+    }
+
+    /**
+     * Scans amount and currency in either order.
+     */
+    private void scan(CharSequence text, int start, int end) {
+        int i = skipSpaces(text, start, end);
+        if (i == end)
+            throw new MoneyParseException("Missing amount", i);
+        if (isLetter(text.charAt(i))) {
+            currencyIndex = scanCurrency(text, i, end);
+            i = scanAmount(text, skipSpaces(text, i + 3, end), end);
+        } else {
+            i = skipSpaces(text, scanAmount(text, i, end), end);
+            currencyIndex = scanCurrency(text, i, end);
+            i += 3;
+        }
+        i = skipSpaces(text, i, end);
+        if (i != end)
+            throw new MoneyParseException("Unexpected character '" + text.charAt(i) + "'", i);
+    }
+
+    /**
+     * Scans an amount and returns the index after it.
+     */
+    private int scanAmount(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+            negative = text.charAt(i++) == '-';
+        long value = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean overflow = false;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                if (value > (Long.MAX_VALUE - digit) / 10)
+                    overflow = true;
+                else
+                    value = value * 10 + digit;
+                digits++;
+                if (fraction >= 0)
+                    fraction++;
+            } else if (c == '.' && fraction < 0 && digits > 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0)
+            throw new MoneyParseException("Missing amount", i);
+        if (fraction == 0)
+            throw new MoneyParseException("Missing fraction digits", i);
+        int exponent = 0;
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            int j = i + 1;
+            boolean negativeExponent = false;
+            if (j < end && (text.charAt(j) == '-' || text.charAt(j) == '+'))
+                negativeExponent = text.charAt(j++) == '-';
+            if (j < end && text.charAt(j) >= '0' && text.charAt(j) <= '9') {
+                for (; j < end && text.charAt(j) >= '0' && text.charAt(j) <= '9'; j++) {
+                    exponent = exponent * 10 + text.charAt(j) - '0';
+                    if (exponent > MAX_EXPONENT)
+                        throw new MoneyParseException("Exponent out of range", i);
+                }
+                if (negativeExponent)
+                    exponent = -exponent;
+                i = j;
+            }
+        }
+        unscaled = negative ? -value : value;
+        scale = Math.max(fraction, 0) - exponent;
+        tooLong = overflow;
+        amountStart = start;
+        amountEnd = i;
+        return i;
+    }
+
+    /**
+     * Scans a three letter ISO code at start and returns the
+     * {@link CurrencyRegistry} index of the currency.
+     */
+    private static int scanCurrency(CharSequence text, int start, int end) {
+        if (start + 3 > end)
+            throw new MoneyParseException("Missing currency", start);
+        int index = 0;
+        for (int i = start; i < start + 3; i++) {
+            char c = text.charAt(i);
+            if (c < 'A' || c > 'Z')
+                throw new MoneyParseException("Invalid currency code", start);
+            index = index * 26 + c - 'A';
+        }
+        int currencyIndex = currencyIndexes.get(index) - 1;
+        Currency currency = currencyIndex < 0 ? Currency.getInstance(text.subSequence(start, start + 3).toString())
+                : CurrencyRegistry.currencyAt(currencyIndex);
+        if (!Money.isCurrencyValid(currency))
+            throw new MoneyParseException("Invalid currency " + currency, start);
+        if (currencyIndex < 0) {
+            currencyIndex = CurrencyRegistry.indexOf(currency);
+            currencyIndexes.set(index, currencyIndex + 1);
+        }
+        return currencyIndex;
+    }
+
+    private static int skipSpaces(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && text.charAt(i) == ' ')
+            i++;
+        return i;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    /**
+     * CharSequence view on ASCII bytes, indexed like the buffer.
+     */
+    private static final class AsciiSequence implements CharSequence {
+        private ByteBuffer buffer;
+
+        AsciiSequence wrap(ByteBuffer buffer) {
+            this.buffer = buffer;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder result = new StringBuilder(end - start);
+            for (int i = start; i < end; i++)
+                result.append(charAt(i));
+            return result;
+        }
+    }
+
+    /**
+     * CharSequence view on a char array.
+     */
+    private static final class CharArraySequence implements CharSequence {
+        private char[] chars;
+
+        CharArraySequence wrap(char[] chars) {
+            this.chars = chars;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return chars.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package de.gzockoll.types.money;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * A {@link Flow.Processor} which consumes Money and publishes the totals
+ * per currency of windows of the stream.
+ * <p/>
+ * A window consists of panes; a pane ends after a number of values or
+ * after a period of time. Tumbling windows have one pane, sliding windows
+ * the last size / slide panes, so a sliding window is published at the
+ * end of every pane. Amounts are summed in minor units per pane. Windows
+ * without values are not published; on completion the values of a
+ * started pane are published as a last window.
+ * <p/>
+ * Values are requested from upstream in batches. Windows are queued and
+ * submitted by a drain task on the configured executor to a
+ * {@link SubmissionPublisher} with a bounded buffer per subscriber, whose
+ * submit blocks while a subscriber lags behind. While the queue is full, no
+ * more values are requested until the drain task takes a window, so a slow
+ * subscriber slows down the upstream instead of growing a buffer; neither
+ * onNext nor the scheduler ending time panes ever waits. When all
+ * subscribers have cancelled, the upstream subscription is cancelled.
+ * Subscribers are signalled by the configured executor, e.g. one creating
+ * virtual threads; locking uses {@link ReentrantLock}, which does not pin
+ * virtual threads.
+ */
+public final class MoneyWindowProcessor implements Flow.Processor<Money, Map<Currency, Money>> {
+
+    /**
+     * Scheduler for time windows if none is configured.
+     */
+    private static final class DefaultScheduler {
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "money-window-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final SubmissionPublisher<Map<Currency, Money>> publisher;
+    private final Executor executor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int paneValues;
+    private final int panesPerWindow;
+    private final int requestBatch;
+    private final int maxPending;
+    private final ScheduledFuture<?> ticker;
+
+    /**
+     * Closed panes of the current window, oldest first.
+     */
+    private final ArrayDeque<CurrencyTotals> panes = new ArrayDeque<>();
+
+    /**
+     * The open pane.
+     */
+    private CurrencyTotals pane = new CurrencyTotals();
+
+    /**
+     * Number of values in the open pane.
+     */
+    private int paneCount;
+
+    /**
+     * Values in the window, including the open pane.
+     */
+    private long windowCount;
+
+    /**
+     * Windows waiting to be submitted, oldest first.
+     */
+    private final ArrayDeque<Map<Currency, Money>> pending = new ArrayDeque<>();
+
+    /**
+     * If a drain task is scheduled or running. Written under the lock, read
+     * without it by onNext.
+     */
+    private volatile boolean draining;
+
+    /**
+     * If the publisher is to be closed once the queue is drained. A
+     * publisher cannot be closed while a submit waits, so a running drain
+     * task closes it.
+     */
+    private boolean completed;
+
+    /**
+     * The error to close the publisher with, null for a normal close.
+     */
+    private Throwable failure;
+
+    /**
+     * If a subscriber ever subscribed, so no subscribers means all have
+     * cancelled.
+     */
+    private volatile boolean subscribed;
+
+    private volatile Flow.Subscription subscription;
+
+    /**
+     * Values requested from upstream but not yet received. Requests are held
+     * back while the queue is full.
+     */
+    private long outstanding;
+
+    private boolean done;
+
+    /**
+     * Returns a new builder.
+     * 
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private MoneyWindowProcessor(Builder builder) {
+        executor = builder.executor;
+        publisher = new SubmissionPublisher<>(builder.executor, builder.bufferCapacity);
+        maxPending = builder.bufferCapacity;
+        paneValues = builder.paneValues;
+        panesPerWindow = builder.panesPerWindow;
+        requestBatch = builder.bufferCapacity;
+        if (builder.paneTime != null) {
+            long nanos = builder.paneTime.toNanos();
+            ticker = builder.scheduler.scheduleAtFixedRate(this::closePane, nanos, nanos, TimeUnit.NANOSECONDS);
+        } else {
+            ticker = null;
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Map<Currency, Money>> subscriber) {
+        subscribed = true;
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        lock.lock();
+        try {
+            outstanding = requestBatch;
+        } finally {
+            lock.unlock();
+        }
+        subscription.request(requestBatch);
+    }
+
+    @Override
+    public void onNext(Money item) {
+        // a running drain task checks the subscribers itself; asking the
+        // publisher would wait for its blocked submit
+        if (!draining && isDownstreamGone()) {
+            cancel();
+            return;
+        }
+        long demand;
+        lock.lock();
+        try {
+            if (done)
+                return;
+            pane.add(item);
+            paneCount++;
+            windowCount++;
+            outstanding--;
+            if (paneCount == paneValues)
+                closePaneLocked();
+            demand = demandLocked();
+        } finally {
+            lock.unlock();
+        }
+        if (demand > 0)
+            subscription.request(demand);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        boolean close;
+        lock.lock();
+        try {
+            if (done)
+                return;
+            failure = throwable;
+            close = finishLocked();
+        } finally {
+            lock.unlock();
+        }
+        stopTicker();
+        if (close)
+            publisher.closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        boolean close;
+        lock.lock();
+        try {
+            if (done)
+                return;
+            if (paneCount > 0)
+                closePaneLocked();
+            done = true;
+            completed = true;
+            close = !draining;
+        } finally {
+            lock.unlock();
+        }
+        stopTicker();
+        if (close)
+            publisher.close();
+    }
+
+    /**
+     * Returns the number of subscribers.
+     * 
+     * @return number of subscribers
+     */
+    public int getNumberOfSubscribers() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    private void closePane() {
+        lock.lock();
+        try {
+            if (!done)
+                closePaneLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of values to request from upstream, 0 while the
+     * queue is full or enough values are outstanding.
+     */
+    private long demandLocked() {
+        if (done || pending.size() >= maxPending || outstanding > requestBatch / 2)
+            return 0;
+        long demand = requestBatch - outstanding;
+        outstanding = requestBatch;
+        return demand;
+    }
+
+    /**
+     * Ends the open pane and queues the window if it has values.
+     */
+    private void closePaneLocked() {
+        panes.addLast(pane);
+        pane = new CurrencyTotals();
+        paneCount = 0;
+        if (panes.size() > panesPerWindow)
+            windowCount -= panes.removeFirst().count();
+        if (windowCount == 0)
+            return;
+        CurrencyTotals window = new CurrencyTotals();
+        for (CurrencyTotals closed : panes)
+            window.addAll(closed);
+        pending.addLast(window.toMap());
+        if (panesPerWindow == 1) {
+            panes.clear();
+            windowCount = 0;
+        }
+        if (!draining) {
+            draining = true;
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Submits queued windows outside the lock until the queue is empty.
+     */
+    private void drain() {
+        for (;;) {
+            Map<Currency, Money> window;
+            long demand;
+            lock.lock();
+            try {
+                window = pending.pollFirst();
+                if (window == null) {
+                    draining = false;
+                    if (completed && failure != null)
+                        publisher.closeExceptionally(failure);
+                    else if (completed)
+                        publisher.close();
+                    return;
+                }
+                demand = demandLocked();
+            } finally {
+                lock.unlock();
+            }
+            if (demand > 0)
+                subscription.request(demand);
+            try {
+                publisher.submit(window);
+            } catch (IllegalStateException e) {
+                // closed by onError or cancel
+            }
+            if (isDownstreamGone())
+                cancel();
+        }
+    }
+
+    private boolean isDownstreamGone() {
+        return publisher.isClosed() || subscribed && publisher.getNumberOfSubscribers() == 0;
+    }
+
+    /**
+     * Stops processing and cancels the upstream subscription.
+     */
+    private void cancel() {
+        boolean close;
+        lock.lock();
+        try {
+            if (done && completed)
+                return;
+            close = finishLocked();
+        } finally {
+            lock.unlock();
+        }
+        stopTicker();
+        if (close)
+            publisher.close();
+        Flow.Subscription current = subscription;
+        if (current != null)
+            current.cancel();
+    }
+
+    /**
+     * Drops queued windows and marks the publisher to be closed.
+     * 
+     * @return true if the caller closes the publisher, false if the drain
+     *         task does
+     */
+    private boolean finishLocked() {
+        done = true;
+        completed = true;
+        pending.clear();
+        return !draining;
+    }
+
+    private void stopTicker() {
+        if (ticker != null)
+            ticker.cancel(false);
+    }
+
+    /**
+     * Configures a processor. Without a window setting, windows are
+     * tumbling windows of 1000 values.
+     */
+    public static final class Builder {
+        private int paneValues = 1000;
+        private Duration paneTime;
+        private int panesPerWindow = 1;
+        private Executor executor = ForkJoinPool.commonPool();
+        private ScheduledExecutorService scheduler;
+        private int bufferCapacity = Flow.defaultBufferSize();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets tumbling windows of a number of values.
+         * 
+         * @param size
+         *            values per window
+         * 
+         * @return this builder
+         */
+        public Builder tumblingCount(int size) {
+            return slidingCount(size, size);
+        }
+
+        /**
+         * Sets sliding windows of a number of values.
+         * 
+         * @param size
+         *            values per window
+         * @param slide
+         *            values between windows, a divisor of size
+         * 
+         * @return this builder
+         */
+        public Builder slidingCount(int size, int slide) {
+            if (slide <= 0 || size < slide || size % slide != 0)
+                throw new IllegalArgumentException("Invalid window: " + size + "/" + slide);
+            paneValues = slide;
+            paneTime = null;
+            panesPerWindow = size / slide;
+            return this;
+        }
+
+        /**
+         * Sets tumbling windows of a period of time.
+         * 
+         * @param size
+         *            window duration
+         * 
+         * @return this builder
+         */
+        public Builder tumblingTime(Duration size) {
+            return slidingTime(size, size);
+        }
+
+        /**
+         * Sets sliding windows of a period of time.
+         * 
+         * @param size
+         *            window duration
+         * @param slide
+         *            duration between windows, a divisor of size
+         * 
+         * @return this builder
+         */
+        public Builder slidingTime(Duration size, Duration slide) {
+            long sizeNanos = size.toNanos();
+            long slideNanos = slide.toNanos();
+            if (slideNanos <= 0 || sizeNanos < slideNanos || sizeNanos % slideNanos != 0)
+                throw new IllegalArgumentException("Invalid window: " + size + "/" + slide);
+            paneValues = Integer.MAX_VALUE;
+            paneTime = slide;
+            panesPerWindow = (int) (sizeNanos / slideNanos);
+            return this;
+        }
+
+        /**
+         * Sets the executor which signals subscribers, the common fork-join
+         * pool by default.
+         * 
+         * @param executor
+         *            executor, e.g. a virtual thread per task executor
+         * 
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler which ends the panes of time windows, a shared
+         * daemon thread by default.
+         * 
+         * @param scheduler
+         *            scheduler
+         * 
+         * @return this builder
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Sets the number of windows buffered per subscriber, which is also
+         * the number of values requested from upstream at a time.
+         * 
+         * @param bufferCapacity
+         *            positive capacity
+         * 
+         * @return this builder
+         */
+        public Builder bufferCapacity(int bufferCapacity) {
+            if (bufferCapacity <= 0)
+                throw new IllegalArgumentException("Invalid capacity: " + bufferCapacity);
+            this.bufferCapacity = bufferCapacity;
+            return this;
+        }
+
+        /**
+         * Builds the processor. Time windows start now.
+         * 
+         * @return processor
+         */
+        public MoneyWindowProcessor build() {
+            if (paneTime != null && scheduler == null)
+                scheduler = DefaultScheduler.INSTANCE;
+            return new MoneyWindowProcessor(this);
+        }
+    }
+}
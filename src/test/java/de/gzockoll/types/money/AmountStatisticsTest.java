@@ -0,0 +1,128 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the amount statistics.
+ */
+public class AmountStatisticsTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Tests count, sum, minimum, maximum and mean.
+     */
+    @Test
+    public void testSummary() {
+        AmountStatistics statistics = new AmountStatistics(EUR);
+        statistics.accept(Money.cents(150));
+        statistics.accept(-50);
+        statistics.accept(Money.euros(3));
+        assertThat(statistics.getCount(), is(3L));
+        assertThat(statistics.getSum(), is(Money.cents(400)));
+        assertThat(statistics.getMin(), is(Money.cents(-50)));
+        assertThat(statistics.getMax(), is(Money.euros(3)));
+        assertThat(statistics.getMean().compareTo(new BigDecimal("1.333333333333333")), is(0));
+    }
+
+    /**
+     * Tests that the sum stays exact beyond the range of a long.
+     */
+    @Test
+    public void testSumOverflow() {
+        AmountStatistics statistics = new AmountStatistics(EUR);
+        statistics.accept(Long.MAX_VALUE);
+        statistics.accept(Long.MAX_VALUE);
+        statistics.accept(-1);
+        assertThat(statistics.getSum().getAmount(), is(new BigDecimal(Long.MAX_VALUE).multiply(
+                BigDecimal.valueOf(2)).subtract(BigDecimal.ONE).movePointLeft(2)));
+    }
+
+    /**
+     * Tests quantiles against sorted amounts.
+     */
+    @Test
+    public void testQuantiles() {
+        Random random = new Random(11);
+        long[] amounts = new long[100000];
+        AmountStatistics statistics = new AmountStatistics(EUR);
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = (long) Math.exp(random.nextGaussian() * 3 + 8) * (random.nextInt(10) == 0 ? -1 : 1);
+            statistics.accept(amounts[i]);
+        }
+        Arrays.sort(amounts);
+        for (double q : new double[] { 0, 0.01, 0.1, 0.25, 0.5, 0.9, 0.99, 0.999, 1 }) {
+            long exact = amounts[(int) Math.floor(q * (amounts.length - 1))];
+            long estimate = statistics.getQuantile(q).asMinor();
+            assertThat(q + ": " + estimate + " vs " + exact, Math.abs(estimate - exact) <= Math.abs(exact) * 0.01 + 1,
+                    is(true));
+        }
+        assertThat(statistics.getQuantile(0), is(statistics.getMin()));
+        assertThat(statistics.getQuantile(1), is(statistics.getMax()));
+    }
+
+    /**
+     * Tests combining per thread statistics.
+     */
+    @Test
+    public void testCombine() {
+        List<Money> values = new ArrayList<>();
+        Currency usd = Currency.getInstance("USD");
+        for (int i = 0; i < 20000; i++)
+            values.add(Money.fromMinor(i, i % 3 == 0 ? usd : EUR));
+        CurrencyStatistics parallel = values.parallelStream().collect(MoneyAggregation.statisticsByCurrency());
+        CurrencyStatistics sequential = new CurrencyStatistics();
+        for (Money value : values)
+            sequential.accept(value);
+        assertThat(parallel.toMap().size(), is(2));
+        for (Currency currency : new Currency[] { EUR, usd }) {
+            assertThat(parallel.get(currency).getCount(), is(sequential.get(currency).getCount()));
+            assertThat(parallel.get(currency).getSum(), is(sequential.get(currency).getSum()));
+            assertThat(parallel.get(currency).getQuantile(0.5), is(sequential.get(currency).getQuantile(0.5)));
+        }
+        assertThat(parallel.get(Currency.getInstance("JPY")) == null, is(true));
+    }
+
+    /**
+     * Tests that looking up a currency without amounts does not register
+     * it.
+     */
+    @Test
+    public void testCurrencyStatisticsLookup() {
+        Currency unregistered = Currency.getInstance("QQQ");
+        int size = CurrencyRegistry.size();
+        assertThat(new CurrencyStatistics().get(unregistered) == null, is(true));
+        assertThat(CurrencyRegistry.registeredIndexOf(unregistered), is(-1));
+        assertThat(CurrencyRegistry.size(), is(size));
+    }
+
+    /**
+     * Tests that the accuracy is validated when the statistics are created.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCurrencyStatisticsAccuracy() {
+        new CurrencyStatistics(1.5);
+    }
+
+    /**
+     * Tests an empty instance.
+     */
+    @Test(expected = NoSuchElementException.class)
+    public void testEmpty() {
+        new AmountStatistics(EUR).getQuantile(0.5);
+    }
+}
@@ -0,0 +1,168 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the balance ledger.
+ */
+public class BalanceLedgerTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * JPY currency.
+     */
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    /**
+     * Temporary ledger files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests credit, debit and balance.
+     */
+    @Test
+    public void testBookings() throws IOException {
+        try (BalanceLedger ledger = BalanceLedger.create(path(), 100)) {
+            assertThat(ledger.balance(7), is(nullValue()));
+            assertThat(ledger.credit(7, Money.fromMinor(1050, EUR)), is(Money.fromMinor(1050, EUR)));
+            assertThat(ledger.debit(7, Money.fromMinor(2000, EUR)), is(Money.fromMinor(-950, EUR)));
+            ledger.credit(0, Money.fromMinor(5, JPY));
+            assertThat(ledger.balance(7), is(Money.fromMinor(-950, EUR)));
+            assertThat(ledger.balance(0), is(Money.fromMinor(5, JPY)));
+            assertThat(ledger.size(), is(2L));
+        }
+    }
+
+    /**
+     * Tests that an account keeps its currency.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCurrencyMismatch() throws IOException {
+        try (BalanceLedger ledger = BalanceLedger.create(path(), 100)) {
+            ledger.credit(1, Money.fromMinor(1, EUR));
+            ledger.credit(1, Money.fromMinor(1, JPY));
+        }
+    }
+
+    /**
+     * Tests that a reopened ledger has the balances.
+     */
+    @Test
+    public void testReopen() throws IOException {
+        Path path = path();
+        try (BalanceLedger ledger = BalanceLedger.create(path, 1000)) {
+            for (long account = 0; account < 500; account++)
+                ledger.credit(account * 31, Money.fromMinor(account, EUR));
+        }
+        try (BalanceLedger ledger = BalanceLedger.open(path)) {
+            assertThat(ledger.size(), is(500L));
+            assertThat(ledger.balance(31 * 42), is(Money.fromMinor(42, EUR)));
+            Map<Long, Long> balances = new HashMap<>();
+            ledger.forEach((account, currency, minor) -> balances.put(account, minor));
+            assertThat(balances.size(), is(500));
+            assertThat(balances.get(31L * 499), is(499L));
+        }
+    }
+
+    /**
+     * Tests concurrent bookings on few accounts.
+     */
+    @Test
+    public void testConcurrentBookings() throws Exception {
+        try (BalanceLedger ledger = BalanceLedger.create(path(), 100)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; t++) {
+                executor.execute(() -> {
+                    for (int i = 0; i < 10000; i++)
+                        ledger.credit(i % 10, Money.fromMinor(1, EUR));
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(30, TimeUnit.SECONDS), is(true));
+            assertThat(ledger.size(), is(10L));
+            for (long account = 0; account < 10; account++)
+                assertThat(ledger.balance(account), is(Money.fromMinor(4000, EUR)));
+        }
+    }
+
+    /**
+     * Tests that the capacity is enforced.
+     */
+    @Test
+    public void testFull() throws IOException {
+        try (BalanceLedger ledger = BalanceLedger.create(path(), 10)) {
+            try {
+                for (long account = 0; account <= ledger.capacity(); account++)
+                    ledger.credit(account, Money.fromMinor(1, EUR));
+                fail();
+            } catch (IllegalStateException e) {
+                assertThat(ledger.size(), is(ledger.capacity()));
+            }
+        }
+    }
+
+    /**
+     * Tests that concurrent inserts never grow the ledger beyond its
+     * capacity.
+     */
+    @Test
+    public void testConcurrentFull() throws Exception {
+        try (BalanceLedger ledger = BalanceLedger.create(path(), 1000)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; t++) {
+                final long first = t;
+                executor.execute(() -> {
+                    try {
+                        for (long account = first; account < 4000; account += 4)
+                            ledger.credit(account, Money.fromMinor(1, EUR));
+                    } catch (IllegalStateException e) {
+                        // full
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(30, TimeUnit.SECONDS), is(true));
+            long[] accounts = new long[1];
+            ledger.forEach((account, currency, minor) -> accounts[0]++);
+            assertThat(ledger.size() <= ledger.capacity(), is(true));
+            assertThat(ledger.size(), is(accounts[0]));
+        }
+    }
+
+    /**
+     * Tests that other files are rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testNotALedger() throws IOException {
+        Path path = path();
+        Files.write(path, new byte[100]);
+        BalanceLedger.open(path);
+    }
+
+    private Path path() throws IOException {
+        return folder.getRoot().toPath().resolve("ledger" + System.nanoTime());
+    }
+}
@@ -0,0 +1,180 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the currency converter and exchange rates.
+ */
+public class CurrencyConverterTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * USD currency.
+     */
+    private static final Currency USD = Currency.getInstance("USD");
+
+    /**
+     * JPY currency.
+     */
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    /**
+     * CHF currency.
+     */
+    private static final Currency CHF = Currency.getInstance("CHF");
+
+    private static ExchangeRates rates() {
+        return ExchangeRates.builder(EUR).rate(EUR, USD, new BigDecimal("1.25"))
+                .rate(EUR, JPY, new BigDecimal("130.5")).rate(CHF, EUR, new BigDecimal("0.8")).build();
+    }
+
+    /**
+     * Tests given, inverse and triangulated rates.
+     */
+    @Test
+    public void testRates() {
+        ExchangeRates rates = rates();
+        assertThat(rates.getRate(EUR, USD), is(new BigDecimal("1.25")));
+        assertThat(rates.getRate(USD, EUR), is(new BigDecimal("0.8")));
+        assertThat(rates.getRate(USD, USD), is(BigDecimal.ONE));
+        assertThat(rates.getRate(CHF, JPY), is(new BigDecimal("104.40")));
+        assertThat(rates.getRate(CHF, JPY), is(rates.getRate(CHF, JPY)));
+        assertThat(rates.getRate(USD, JPY).compareTo(new BigDecimal("104.4")), is(0));
+        assertThat(rates.hasRate(USD, Currency.getInstance("GBP")), is(false));
+    }
+
+    /**
+     * Tests a missing rate.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingRate() {
+        new CurrencyConverter(rates()).convert(Money.euros(1), Currency.getInstance("GBP"), RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Tests converting single values.
+     */
+    @Test
+    public void testConvert() {
+        CurrencyConverter converter = new CurrencyConverter(rates());
+        assertThat(converter.convert(Money.euros(10), USD, RoundingMode.HALF_UP), is(Money.fromMinor(1250, USD)));
+        assertThat(converter.convert(Money.cents(1), JPY, RoundingMode.HALF_UP), is(Money.fromMinor(1, JPY)));
+        assertThat(converter.convert(Money.cents(1), JPY, RoundingMode.DOWN), is(Money.fromMinor(1, JPY)));
+        assertThat(converter.convert(Money.fromMinor(333, USD), EUR, RoundingMode.HALF_EVEN), is(Money.cents(266)));
+    }
+
+    /**
+     * Tests that batch conversion matches single conversion.
+     */
+    @Test
+    public void testConvertMinor() {
+        CurrencyConverter converter = new CurrencyConverter(rates());
+        long[] minors = { 0, 1, -1, 333, 123456789, -98765 };
+        long[] results = new long[minors.length];
+        converter.convertMinor(minors, USD, JPY, RoundingMode.HALF_EVEN, results, minors.length);
+        for (int i = 0; i < minors.length; i++)
+            assertThat(Money.fromMinor(results[i], JPY), is(converter.convert(Money.fromMinor(minors[i], USD), JPY,
+                    RoundingMode.HALF_EVEN)));
+    }
+
+    /**
+     * Tests that inverse and triangulated rates which are no finite decimals
+     * are converted exactly in minor units, without BigDecimal fallbacks.
+     */
+    @Test
+    public void testConvertMinorDerivedRates() {
+        CurrencyConverter converter = new CurrencyConverter(ExchangeRates.builder(EUR)
+                .rate(EUR, USD, new BigDecimal("1.0856")).rate(EUR, JPY, new BigDecimal("161.37")).build());
+        long[] minors = { 0, 1, -1, 333, 5428, 123456789, -98765, 1L << 40, Long.MAX_VALUE / 200 };
+        long[] results = new long[minors.length];
+        boolean enabled = MoneyMetrics.isEnabled();
+        MoneyMetrics.setEnabled(true);
+        try {
+            for (RoundingMode mode : new RoundingMode[] { RoundingMode.HALF_EVEN, RoundingMode.FLOOR,
+                    RoundingMode.UP }) {
+                for (Currency[] pair : new Currency[][] { { USD, EUR }, { USD, JPY }, { JPY, USD } }) {
+                    MoneyMetrics.reset();
+                    converter.convertMinor(minors, pair[0], pair[1], mode, results, minors.length);
+                    assertThat(MoneyMetrics.get(MoneyMetrics.Counter.BIG_DECIMAL_FALLBACKS), is(0L));
+                    for (int i = 0; i < minors.length; i++) {
+                        BigDecimal[] rate = exactRate(pair[0], pair[1]);
+                        BigDecimal exact = BigDecimal.valueOf(minors[i]).multiply(rate[0])
+                                .movePointRight(CurrencyRegistry.fractionDigitsAt(CurrencyRegistry.indexOf(pair[1]))
+                                        - CurrencyRegistry.fractionDigitsAt(CurrencyRegistry.indexOf(pair[0])));
+                        assertThat(results[i], is(exact.divide(rate[1], 0, mode).longValueExact()));
+                        assertThat(Money.fromMinor(results[i], pair[1]), is(converter.convert(
+                                Money.fromMinor(minors[i], pair[0]), pair[1], mode)));
+                    }
+                }
+            }
+        } finally {
+            MoneyMetrics.setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Returns the rates of testConvertMinorDerivedRates as numerator and
+     * denominator.
+     */
+    private static BigDecimal[] exactRate(Currency from, Currency to) {
+        BigDecimal usd = new BigDecimal("1.0856");
+        BigDecimal jpy = new BigDecimal("161.37");
+        if (from == USD && to == EUR)
+            return new BigDecimal[] { BigDecimal.ONE, usd };
+        if (from == USD)
+            return new BigDecimal[] { jpy, usd };
+        return new BigDecimal[] { usd, jpy };
+    }
+
+    /**
+     * Tests converting a mixed column.
+     */
+    @Test
+    public void testConvertColumn() {
+        CurrencyConverter converter = new CurrencyConverter(rates());
+        MoneyColumn column = MoneyColumn.of(Arrays.asList(Money.cents(100), Money.fromMinor(125, USD),
+                Money.fromMinor(131, JPY)));
+        MoneyColumn result = converter.convert(column, EUR, RoundingMode.HALF_UP);
+        assertThat(result.isSingleCurrency(), is(true));
+        assertThat(result.sum(), is(Money.cents(300)));
+        assertThat(converter.convert(MoneyColumn.of(new long[] { 100, 200 }, EUR), USD, RoundingMode.HALF_UP)
+                .sum(), is(Money.fromMinor(375, USD)));
+    }
+
+    /**
+     * Tests replacing the rates.
+     */
+    @Test
+    public void testSetRates() {
+        CurrencyConverter converter = new CurrencyConverter(rates());
+        converter.setRates(ExchangeRates.builder(EUR).rate(EUR, USD, new BigDecimal("2")).build());
+        assertThat(converter.convert(Money.euros(1), USD, RoundingMode.HALF_UP), is(Money.fromMinor(200, USD)));
+    }
+
+    /**
+     * Tests that looking up rates of unregistered currencies does not
+     * register them.
+     */
+    @Test
+    public void testUnregisteredRate() {
+        Currency unregistered = Currency.getInstance("QQQ");
+        ExchangeRates rates = rates();
+        int size = CurrencyRegistry.size();
+        assertThat(rates.hasRate(EUR, unregistered), is(false));
+        assertThat(rates.hasRate(unregistered, Currency.getInstance("XQQ")), is(false));
+        assertThat(rates.getRate(unregistered, unregistered), is(BigDecimal.ONE));
+        assertThat(CurrencyRegistry.size(), is(size));
+    }
+}
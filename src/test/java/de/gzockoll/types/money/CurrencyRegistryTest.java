@@ -0,0 +1,45 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the currency registry.
+ */
+public class CurrencyRegistryTest {
+
+    /**
+     * Tests that currencies are interned.
+     */
+    @Test
+    public void testIndexIsStable() {
+        int index = CurrencyRegistry.indexOf(Currency.getInstance("EUR"));
+        assertThat(CurrencyRegistry.indexOf(Currency.getInstance("EUR")), is(index));
+        assertThat(CurrencyRegistry.currencyAt(index), is(Currency.getInstance("EUR")));
+        assertThat(CurrencyRegistry.indexOf(Currency.getInstance("USD")) == index, is(false));
+    }
+
+    /**
+     * Tests the precomputed data.
+     */
+    @Test
+    public void testPrecomputedData() {
+        int omr = CurrencyRegistry.indexOf(Currency.getInstance("OMR"));
+        assertThat(CurrencyRegistry.fractionDigitsAt(omr), is(3));
+        assertThat(CurrencyRegistry.centFactorAt(omr), is(1000L));
+        assertThat(CurrencyRegistry.numericCodeAt(omr), is(512));
+    }
+
+    /**
+     * Tests a currency with four fraction digits.
+     */
+    @Test
+    public void testFourFractionDigits() {
+        Currency clf = Currency.getInstance("CLF");
+        assertThat(CurrencyRegistry.centFactorAt(CurrencyRegistry.indexOf(clf)), is(10000L));
+        assertThat(Money.fromMajor(2, clf).asMinor(), is(20000L));
+    }
+}
@@ -0,0 +1,115 @@
+package de.gzockoll.types.money;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Date;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.ibm.icu.text.CurrencyMetaInfo;
+import com.ibm.icu.text.CurrencyMetaInfo.CurrencyFilter;
+import com.ibm.icu.text.CurrencyMetaInfo.CurrencyInfo;
+import com.ibm.icu.util.Currency;
+
+/**
+ * Test for the CurrencyValidityIndex class.
+ */
+public class CurrencyValidityIndexTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Tests the franc around the introduction of the euro notes.
+     */
+    @Test
+    public void testFranc() {
+        Currency franc = Currency.getInstance("FRF");
+        long before = new DateTime(2001, 12, 1, 0, 0, DateTimeZone.UTC).getMillis();
+        long after = new DateTime(2002, 12, 1, 0, 0, DateTimeZone.UTC).getMillis();
+        assertThat(CurrencyValidityIndex.isValid(franc, before), is(true));
+        assertThat(CurrencyValidityIndex.isValid(franc, after), is(false));
+        assertThat(CurrencyValidityIndex.isValid(franc, new Interval(before, after)), is(true));
+    }
+
+    /**
+     * Tests that checks do not register currencies, neither unknown nor
+     * historical ones.
+     */
+    @Test
+    public void testDoesNotRegister() {
+        Currency unknown = Currency.getInstance("XQQ");
+        Currency mark = Currency.getInstance("DEM");
+        Assume.assumeTrue(CurrencyRegistry.registeredIndexOf(mark) < 0);
+        int size = CurrencyRegistry.size();
+        long instant = new DateTime(1995, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+        assertThat(CurrencyValidityIndex.isValid(unknown, instant), is(false));
+        assertThat(Money.isCurrencyValid(unknown), is(false));
+        assertThat(CurrencyValidityIndex.isValid(mark, instant), is(true));
+        assertThat(Money.isCurrencyValid(mark), is(false));
+        assertThat(CurrencyRegistry.size(), is(size));
+        assertThat(CurrencyRegistry.registeredIndexOf(unknown), is(-1));
+    }
+
+    /**
+     * Tests that results match ICU at the bounds of all ranges and at random
+     * instants.
+     */
+    @Test
+    public void testMatchesIcu() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            String code = currency.getCurrencyCode();
+            for (CurrencyInfo info : CurrencyMetaInfo.getInstance().currencyInfo(CurrencyFilter.onCurrency(code))) {
+                for (long bound : new long[] { info.from, info.to }) {
+                    if (bound == Long.MIN_VALUE || bound == Long.MAX_VALUE)
+                        continue;
+                    for (long instant = bound - 1; instant <= bound + 1; instant++)
+                        assertMatches(currency, instant, instant);
+                }
+            }
+            for (int i = 0; i < 20; i++) {
+                long start = (long) (random.nextDouble() * now * 1.2);
+                assertMatches(currency, start, start);
+                assertMatches(currency, start, start + random.nextInt(Integer.MAX_VALUE) * 100L);
+            }
+        }
+    }
+
+    /**
+     * Tests bulk validation.
+     */
+    @Test
+    public void testValidate() {
+        Currency franc = Currency.getInstance("FRF");
+        long before = new DateTime(2001, 12, 1, 0, 0, DateTimeZone.UTC).getMillis();
+        long after = new DateTime(2002, 12, 1, 0, 0, DateTimeZone.UTC).getMillis();
+        boolean[] results = new boolean[3];
+        int invalid = CurrencyValidityIndex.validate(new Currency[] { franc, franc, EUR }, new long[] { before,
+                after, after }, results, 3);
+        assertThat(invalid, is(1));
+        assertThat(results[0], is(true));
+        assertThat(results[1], is(false));
+        assertThat(results[2], is(true));
+        MoneyColumn column = MoneyColumn.builder().add(1, EUR).add(2, EUR).build();
+        invalid = CurrencyValidityIndex.validate(column, new long[] {
+                new DateTime(1998, 6, 1, 0, 0, DateTimeZone.UTC).getMillis(), after }, results);
+        assertThat(invalid, is(1));
+        assertThat(results[0], is(false));
+    }
+
+    private static void assertMatches(Currency currency, long start, long end) {
+        boolean expected = Currency.isAvailable(currency.getCurrencyCode(), new Date(start), new Date(end));
+        assertThat(currency + " " + start + " " + end, CurrencyValidityIndex.isValid(currency, new Interval(start,
+                end)), is(expected));
+    }
+}
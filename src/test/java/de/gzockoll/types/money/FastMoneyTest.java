@@ -0,0 +1,94 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the fast money class.
+ */
+public class FastMoneyTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Tests adding and subtracting.
+     */
+    @Test
+    public void testAddAndSubtract() {
+        FastMoney m1 = FastMoney.fromMinor(1000, EUR);
+        FastMoney m2 = FastMoney.fromMinor(1150, EUR);
+        assertThat(m1.add(m2), is(FastMoney.fromMinor(2150, EUR)));
+        assertThat(m1.subtract(m2), is(FastMoney.fromMinor(-150, EUR)));
+        assertThat(m1.negate(), is(FastMoney.fromMinor(-1000, EUR)));
+    }
+
+    /**
+     * Tests conversion from and to Money.
+     */
+    @Test
+    public void testMoneyRoundTrip() {
+        Money m = Money.fromMinor(123456, EUR);
+        FastMoney f = FastMoney.of(m);
+        assertThat(f.asMinor(), is(123456L));
+        assertThat(f.getAmount(), is(new BigDecimal("1234.56")));
+        assertThat(f.toMoney(), is(m));
+        assertThat(f.toString(), is(m.toString()));
+
+        Currency yen = Currency.getInstance("JPY");
+        assertThat(FastMoney.of(Money.fromMajor(19, yen)).asMinor(), is(19L));
+    }
+
+    /**
+     * Tests that sub-minor amounts are rejected.
+     */
+    @Test(expected = ArithmeticException.class)
+    public void testSubMinorAmountIsRejected() {
+        FastMoney.of(new Money(new BigDecimal("1.005"), EUR));
+    }
+
+    /**
+     * Tests overflow detection.
+     */
+    @Test(expected = ArithmeticException.class)
+    public void testOverflow() {
+        FastMoney.fromMinor(Long.MAX_VALUE, EUR).add(FastMoney.fromMinor(1, EUR));
+    }
+
+    /**
+     * Tests currency mismatch.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCurrencyMismatch() {
+        FastMoney.fromMinor(1, EUR).add(FastMoney.fromMinor(1, Currency.getInstance("JPY")));
+    }
+
+    /**
+     * Tests remainder allocation.
+     */
+    @Test
+    public void testRemainderAllocation() {
+        FastMoney[] alloc = FastMoney.fromMinor(5900, EUR).allocate(3);
+        assertThat(alloc[0], is(FastMoney.fromMinor(1967, EUR)));
+        assertThat(alloc[1], is(FastMoney.fromMinor(1967, EUR)));
+        assertThat(alloc[2], is(FastMoney.fromMinor(1966, EUR)));
+
+        alloc = FastMoney.fromMinor(-5900, EUR).allocate(3);
+        assertThat(alloc[0].add(alloc[1]).add(alloc[2]), is(FastMoney.fromMinor(-5900, EUR)));
+    }
+
+    /**
+     * Test invalid currency
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void using_fromMinor_with_an_invalid_currency_should_throw_an_exception() {
+        FastMoney.fromMinor(100, Currency.getInstance("XYZ"));
+    }
+}
@@ -0,0 +1,133 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the ledger reader.
+ */
+public class LedgerReaderTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * USD currency.
+     */
+    private static final Currency USD = Currency.getInstance("USD");
+
+    /**
+     * JPY currency.
+     */
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    /**
+     * Temporary ledger files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    /**
+     * Tests amount and currency in one column.
+     */
+    @Test
+    public void testCombinedColumn() throws IOException {
+        File file = write("1.50 EUR\n2 EUR\r\n\nUSD -0.25\n100 JPY");
+        LedgerTotals totals = LedgerReader.builder().build().read(file.toPath());
+        assertThat(totals.getRows(), is(4L));
+        assertThat(totals.getTotal(EUR), is(Money.cents(350)));
+        assertThat(totals.getCount(EUR), is(2L));
+        assertThat(totals.getTotal(USD), is(Money.fromMinor(-25, USD)));
+        assertThat(totals.getTotal(JPY), is(Money.fromMinor(100, JPY)));
+        assertThat(totals.getTotals().size(), is(3));
+        assertThat(totals.getKeys().isEmpty(), is(true));
+    }
+
+    /**
+     * Tests separate columns, header and keys over many chunks against
+     * totals computed with Money.
+     */
+    @Test
+    public void testChunksAndKeys() throws IOException {
+        Currency[] currencies = { EUR, USD, JPY };
+        String[] keys = { "alice", "bob", "carol" };
+        Money[][] expected = new Money[keys.length][currencies.length];
+        for (int k = 0; k < keys.length; k++)
+            for (int c = 0; c < currencies.length; c++)
+                expected[k][c] = Money.fromMinor(0, currencies[c]);
+        StringBuilder content = new StringBuilder("id;account;amount;currency\n");
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            int k = random.nextInt(keys.length);
+            int c = random.nextInt(currencies.length);
+            Money m = Money.fromMinor(random.nextInt(200000) - 100000, currencies[c]);
+            expected[k][c] = expected[k][c].add(m);
+            content.append(i).append(';').append(keys[k]).append(';').append(m.getAmount().toPlainString())
+                    .append(';').append(currencies[c].getCurrencyCode()).append('\n');
+        }
+        LedgerTotals totals = LedgerReader.builder().delimiter(';').keyColumn(1).amountColumn(2).currencyColumn(3)
+                .header(true).chunkSize(1000).build().read(write(content.toString()).toPath());
+        assertThat(totals.getRows(), is(5000L));
+        assertThat(totals.getKeys().size(), is(3));
+        long count = 0;
+        for (int c = 0; c < currencies.length; c++) {
+            Money sum = Money.fromMinor(0, currencies[c]);
+            for (int k = 0; k < keys.length; k++) {
+                assertThat(totals.getTotals(keys[k]).get(currencies[c]), is(expected[k][c]));
+                sum = sum.add(expected[k][c]);
+                count += totals.getCount(keys[k], currencies[c]);
+            }
+            assertThat(totals.getTotal(currencies[c]), is(sum));
+        }
+        assertThat(count, is(5000L));
+    }
+
+    /**
+     * Tests the error for an invalid line.
+     */
+    @Test
+    public void testInvalidLine() throws IOException {
+        File file = write("1.00,EUR\n1.001,EUR\n");
+        try {
+            LedgerReader.builder().currencyColumn(1).build().read(file.toPath());
+            fail();
+        } catch (IOException e) {
+            assertThat(e.getMessage().startsWith("Invalid ledger line at byte 9"), is(true));
+            assertThat(e.getCause() instanceof MoneyParseException, is(true));
+        }
+    }
+
+    /**
+     * Tests that counting a currency which did not occur does not register
+     * it.
+     */
+    @Test
+    public void testUnregisteredCurrency() throws IOException {
+        Currency unregistered = Currency.getInstance("QQQ");
+        int size = CurrencyRegistry.size();
+        LedgerTotals totals = LedgerReader.builder().build().read(write("1.50 EUR").toPath());
+        assertThat(totals.getCount(unregistered), is(0L));
+        assertThat(totals.getCount("key", unregistered), is(0L));
+        assertThat(CurrencyRegistry.size(), is(size));
+    }
+}
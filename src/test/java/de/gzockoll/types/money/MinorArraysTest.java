@@ -0,0 +1,174 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the bulk operations on minor unit arrays.
+ */
+public class MinorArraysTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Tests add and subtract.
+     */
+    @Test
+    public void testAddAndSubtract() {
+        long[] a = { 1, -2, 300, Long.MAX_VALUE - 1 };
+        long[] b = { 5, 5, -300, 1 };
+        long[] results = new long[4];
+        MinorArrays.add(a, b, results, 4);
+        assertThat(results[3], is(Long.MAX_VALUE));
+        MinorArrays.subtract(results, b, results, 4);
+        assertThat(results[0], is(1L));
+        assertThat(results[2], is(300L));
+        MinorArrays.add(a, -1, results, 3);
+        assertThat(results[1], is(-3L));
+    }
+
+    /**
+     * Tests overflow detection.
+     */
+    @Test
+    public void testOverflow() {
+        long[] a = { 0, Long.MAX_VALUE };
+        try {
+            MinorArrays.add(a, new long[] { 0, 1 }, new long[2], 2);
+            fail();
+        } catch (ArithmeticException e) {
+        }
+        try {
+            MinorArrays.subtract(new long[] { Long.MIN_VALUE }, new long[] { 1 }, new long[1], 1);
+            fail();
+        } catch (ArithmeticException e) {
+        }
+        try {
+            MinorArrays.sum(new long[] { Long.MAX_VALUE, 1, -1, 1 }, 4);
+            fail();
+        } catch (ArithmeticException e) {
+        }
+        assertThat(MinorArrays.sum(new long[] { Long.MAX_VALUE, 1, -1 }, 3), is(Long.MAX_VALUE));
+        assertThat(MinorArrays.sum(new long[] { Long.MIN_VALUE, -1, 1 }, 3), is(Long.MIN_VALUE));
+    }
+
+    /**
+     * Tests sums against BigInteger.
+     */
+    @Test
+    public void testSum() {
+        Random random = new Random(5);
+        long[] a = new long[10001];
+        boolean[] mask = new boolean[a.length];
+        BigInteger expected = BigInteger.ZERO;
+        BigInteger expectedMasked = BigInteger.ZERO;
+        for (int i = 0; i < a.length; i++) {
+            a[i] = random.nextLong() >> 14;
+            mask[i] = random.nextBoolean();
+            expected = expected.add(BigInteger.valueOf(a[i]));
+            if (mask[i])
+                expectedMasked = expectedMasked.add(BigInteger.valueOf(a[i]));
+        }
+        assertThat(MinorArrays.sum(a, a.length), is(expected.longValueExact()));
+        assertThat(MinorArrays.sum(a, mask, a.length), is(expectedMasked.longValueExact()));
+    }
+
+    /**
+     * Tests scaling against the Money path.
+     */
+    @Test
+    public void testScale() {
+        Random random = new Random(9);
+        long[] a = new long[2000];
+        for (int i = 0; i < a.length; i++)
+            a[i] = i % 2 == 0 ? random.nextInt(20000) - 10000 : random.nextLong() >> 8;
+        a[0] = 5;
+        a[1] = -5;
+        long[] results = new long[a.length];
+        for (RoundingMode mode : new RoundingMode[] { RoundingMode.HALF_UP, RoundingMode.HALF_EVEN,
+                RoundingMode.FLOOR, RoundingMode.CEILING, RoundingMode.DOWN }) {
+            MinorArrays.scale(a, 19, 10, mode, results, a.length);
+            for (int i = 0; i < a.length; i++)
+                assertThat(results[i], is(Money.fromMinor(a[i], EUR).multiply(new BigDecimal("1.9")).getAmount()
+                        .setScale(2, mode).movePointRight(2).longValueExact()));
+            MinorArrays.scale(a, -7, 3, mode, results, a.length);
+            for (int i = 0; i < a.length; i++)
+                assertThat(results[i], is(new BigDecimal(a[i]).multiply(BigDecimal.valueOf(-7)).divide(
+                        BigDecimal.valueOf(3), 0, mode).longValueExact()));
+        }
+        MinorArrays.scale(a, 19, 100, RoundingMode.HALF_UP, results, a.length);
+        for (int i = 0; i < a.length; i++)
+            assertThat(Money.fromMinor(results[i], EUR), is(Money.fromMinor(a[i], EUR).multiply(
+                    new BigDecimal("0.19")).scaled()));
+    }
+
+    /**
+     * Tests scale rounding in every rounding mode, including ties, against
+     * BigDecimal.
+     */
+    @Test
+    public void testScaleRoundingModes() {
+        Random random = new Random(11);
+        long[] a = new long[4000];
+        for (int i = 0; i < a.length; i++)
+            a[i] = i % 2 == 0 ? random.nextInt(2001) - 1000 : random.nextInt() >> random.nextInt(31);
+        a[0] = Integer.MAX_VALUE;
+        a[1] = -Integer.MAX_VALUE;
+        long[] results = new long[a.length];
+        long[][] fractions = { { 1, 2 }, { 3, 4 }, { -5, 2 }, { 19, 100 }, { 2147483647, 7 }, { 1, 1L << 61 },
+                { -3, (1L << 62) - 1 }, { 7, 1 } };
+        for (RoundingMode mode : RoundingMode.values()) {
+            if (mode == RoundingMode.UNNECESSARY)
+                continue;
+            for (long[] fraction : fractions) {
+                MinorArrays.scale(a, fraction[0], fraction[1], mode, results, a.length);
+                for (int i = 0; i < a.length; i++)
+                    assertThat(results[i], is(BigDecimal.valueOf(a[i]).multiply(BigDecimal.valueOf(fraction[0]))
+                            .divide(BigDecimal.valueOf(fraction[1]), 0, mode).longValueExact()));
+            }
+        }
+        MinorArrays.scale(new long[] { 4, -8 }, 3, 4, RoundingMode.UNNECESSARY, results, 2);
+        assertThat(results[0], is(3L));
+        assertThat(results[1], is(-6L));
+        try {
+            MinorArrays.scale(new long[] { 4, -6 }, 3, 4, RoundingMode.UNNECESSARY, results, 2);
+            fail();
+        } catch (ArithmeticException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests scaling beyond the range of a long.
+     */
+    @Test(expected = ArithmeticException.class)
+    public void testScaleOverflow() {
+        MinorArrays.scale(new long[] { Long.MAX_VALUE / 2 }, 3, 1, RoundingMode.HALF_UP, new long[1], 1);
+    }
+
+    /**
+     * Tests comparison masks.
+     */
+    @Test
+    public void testMasks() {
+        long[] a = { -5, 0, 5, 10 };
+        boolean[] mask = new boolean[4];
+        assertThat(MinorArrays.greaterThan(a, 0, mask, 4), is(2));
+        assertThat(mask[2] && mask[3] && !mask[1], is(true));
+        assertThat(MinorArrays.sum(a, mask, 4), is(15L));
+        assertThat(MinorArrays.lessThan(a, 5, mask, 4), is(2));
+        assertThat(mask[0] && mask[1] && !mask[2], is(true));
+    }
+}
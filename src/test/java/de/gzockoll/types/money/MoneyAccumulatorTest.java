@@ -0,0 +1,134 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the money accumulator.
+ */
+public class MoneyAccumulatorTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Tests concurrent adding.
+     */
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final MoneyAccumulator accumulator = new MoneyAccumulator(EUR);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        accumulator.add(Money.cents(1));
+                        accumulator.add(2);
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(accumulator.snapshot(), is(Money.fromMinor(240000, EUR)));
+    }
+
+    /**
+     * Tests amounts with sub-minor precision.
+     */
+    @Test
+    public void testSubMinorAmounts() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(EUR);
+        Money fraction = new Money(new BigDecimal("0.005"), EUR);
+        accumulator.add(Money.euros(1));
+        accumulator.add(fraction);
+        accumulator.add(fraction);
+        assertThat(accumulator.snapshot(), is(Money.euros(1).add(fraction).add(fraction)));
+    }
+
+    /**
+     * Tests sumThenReset.
+     */
+    @Test
+    public void testSumThenReset() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(EUR);
+        accumulator.add(Money.euros(3));
+        assertThat(accumulator.sumThenReset(), is(Money.euros(3)));
+        assertThat(accumulator.snapshot().isZero(), is(true));
+    }
+
+    /**
+     * Tests that a minor unit total beyond the range of a long is kept
+     * exactly.
+     */
+    @Test
+    public void testOverflow() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(EUR);
+        accumulator.add(Long.MAX_VALUE);
+        accumulator.add(Long.MAX_VALUE);
+        accumulator.add(Money.cents(2));
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE, 2).multiply(BigDecimal.valueOf(2))
+                .add(new BigDecimal("0.02"));
+        assertThat(accumulator.snapshot().getAmount(), is(expected));
+        accumulator.add(-Long.MAX_VALUE);
+        accumulator.add(-Long.MAX_VALUE);
+        assertThat(accumulator.sumThenReset(), is(Money.cents(2)));
+    }
+
+    /**
+     * Tests that resetting concurrently with adding loses no update and
+     * snapshots never go backwards.
+     */
+    @Test
+    public void testConcurrentSnapshots() throws Exception {
+        final MoneyAccumulator accumulator = new MoneyAccumulator(EUR);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        BigDecimal drained = BigDecimal.ZERO;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100000; i++)
+                        accumulator.add(1);
+                }));
+            }
+            Money last = accumulator.snapshot();
+            for (int i = 0; i < 200; i++) {
+                Money current = accumulator.snapshot();
+                assertThat(current.getAmount().compareTo(last.getAmount()) >= 0, is(true));
+                last = current;
+            }
+            for (int i = 0; i < 200; i++)
+                drained = drained.add(accumulator.sumThenReset().getAmount());
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        drained = drained.add(accumulator.snapshot().getAmount());
+        assertThat(drained.compareTo(new BigDecimal("4000")), is(0));
+    }
+
+    /**
+     * Tests currency mismatch.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCurrencyMismatch() {
+        new MoneyAccumulator(EUR).add(Money.fromMajor(1, Currency.getInstance("JPY")));
+    }
+}
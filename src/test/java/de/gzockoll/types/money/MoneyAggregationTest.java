@@ -0,0 +1,81 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the money aggregation.
+ */
+public class MoneyAggregationTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * JPY currency.
+     */
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    /**
+     * Tests summing mixed currencies.
+     */
+    @Test
+    public void testSumByCurrency() {
+        Map<Currency, Money> totals = MoneyAggregation.sumByCurrency(Money.euros(10), Money.fromMajor(5, JPY),
+                Money.cents(25), Money.fromMajor(7, JPY));
+        assertThat(totals.size(), is(2));
+        assertThat(totals.get(EUR), is(Money.fromMinor(1025, EUR)));
+        assertThat(totals.get(JPY), is(Money.fromMajor(12, JPY)));
+    }
+
+    /**
+     * Tests that amounts with sub-minor precision are summed exactly.
+     */
+    @Test
+    public void testSubMinorAmounts() {
+        List<Money> values = Arrays.asList(Money.euros(1), new Money(new BigDecimal("0.005"), EUR),
+                Money.cents(1));
+        Money expected = values.get(0).add(values.get(1)).add(values.get(2));
+        assertThat(MoneyAggregation.sumByCurrency(values).get(EUR), is(expected));
+    }
+
+    /**
+     * Tests that sums exceeding a long are summed exactly.
+     */
+    @Test
+    public void testOverflow() {
+        Money big = Money.fromMinor(Long.MAX_VALUE, EUR);
+        assertThat(MoneyAggregation.sumByCurrency(big, big).get(EUR), is(big.add(big)));
+    }
+
+    /**
+     * Tests that sequential, parallel and stream sums agree.
+     */
+    @Test
+    public void testParallelSum() {
+        List<Money> values = new ArrayList<>();
+        Money expectedEur = Money.fromMinor(0, EUR);
+        for (int i = 0; i < 50000; i++) {
+            Money value = i % 3 == 0 ? Money.fromMinor(i, JPY) : Money.fromMinor(i, EUR);
+            values.add(value);
+            if (value.getCurrency().equals(EUR))
+                expectedEur = expectedEur.add(value);
+        }
+        Map<Currency, Money> sequential = MoneyAggregation.sumByCurrency(values);
+        assertThat(sequential.get(EUR), is(expectedEur));
+        assertThat(MoneyAggregation.parallelSumByCurrency(values), is(sequential));
+        assertThat(MoneyAggregation.parallelSumByCurrency(values.toArray(new Money[0])), is(sequential));
+        assertThat(MoneyAggregation.sumByCurrency(values.parallelStream()), is(sequential));
+    }
+}
@@ -0,0 +1,143 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the money bag.
+ */
+public class MoneyBagTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * USD currency.
+     */
+    private static final Currency USD = Currency.getInstance("USD");
+
+    /**
+     * JPY currency.
+     */
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    /**
+     * Tests adding amounts of several currencies.
+     */
+    @Test
+    public void testPlus() {
+        MoneyBag bag = MoneyBag.of(Money.euros(1), Money.fromMinor(250, USD), Money.cents(50));
+        assertThat(bag.size(), is(2));
+        assertThat(bag.get(EUR), is(Money.cents(150)));
+        assertThat(bag.getMinor(USD), is(250L));
+        assertThat(bag.get(JPY), is(Money.fromMinor(0, JPY)));
+
+        MoneyBag sum = bag.plus(MoneyBag.of(Money.fromMinor(100, JPY), Money.fromMinor(-250, USD)));
+        assertThat(sum.size(), is(2));
+        assertThat(sum.getMinor(JPY), is(100L));
+        assertThat(sum.getMinor(USD), is(0L));
+        assertThat(bag.size(), is(2));
+    }
+
+    /**
+     * Tests that amounts cancelling out are removed.
+     */
+    @Test
+    public void testMinus() {
+        MoneyBag bag = MoneyBag.of(Money.euros(1)).minus(Money.euros(1));
+        assertThat(bag.isEmpty(), is(true));
+        assertThat(bag, is(MoneyBag.empty()));
+    }
+
+    /**
+     * Tests negate.
+     */
+    @Test
+    public void testNegate() {
+        MoneyBag bag = MoneyBag.of(Money.euros(1), Money.fromMinor(-3, JPY));
+        assertThat(bag.negate(), is(MoneyBag.of(Money.euros(-1), Money.fromMinor(3, JPY))));
+    }
+
+    /**
+     * Tests allocation per currency.
+     */
+    @Test
+    public void testAllocate() {
+        MoneyBag[] parts = MoneyBag.of(Money.cents(100), Money.fromMinor(2, JPY)).allocate(3);
+        assertThat(parts.length, is(3));
+        assertThat(parts[0], is(MoneyBag.of(Money.cents(34), Money.fromMinor(1, JPY))));
+        assertThat(parts[1], is(MoneyBag.of(Money.cents(33), Money.fromMinor(1, JPY))));
+        assertThat(parts[2], is(MoneyBag.of(Money.cents(33))));
+    }
+
+    /**
+     * Tests the builder with many currencies.
+     */
+    @Test
+    public void testBuilderWithManyCurrencies() {
+        MoneyBag.Builder builder = MoneyBag.builder();
+        List<Currency> currencies = new ArrayList<>();
+        for (Currency currency : Currency.getAvailableCurrencies())
+            if (Money.isCurrencyValid(currency) && currencies.size() < 150)
+                currencies.add(currency);
+        for (int i = 0; i < currencies.size(); i++)
+            builder.add(i + 1, currencies.get(i));
+        MoneyBag bag = builder.build();
+        assertThat(bag.size(), is(currencies.size()));
+        for (int i = 0; i < currencies.size(); i++)
+            assertThat(bag.getMinor(currencies.get(i)), is((long) i + 1));
+        assertThat(bag.plus(bag).getMinor(currencies.get(9)), is(20L));
+    }
+
+    /**
+     * Tests iteration.
+     */
+    @Test
+    public void testForEach() {
+        final long[] total = new long[1];
+        MoneyBag.of(Money.cents(5), Money.fromMinor(7, USD)).forEach((currency, minor) -> total[0] += minor);
+        assertThat(total[0], is(12L));
+    }
+
+    /**
+     * Tests that amounts below the minor unit are rejected.
+     */
+    @Test(expected = ArithmeticException.class)
+    public void testSubMinorAmount() {
+        MoneyBag.empty().plus(new Money(new BigDecimal("0.001"), EUR));
+    }
+
+    /**
+     * Tests equals and hashCode.
+     */
+    @Test
+    public void testEquals() {
+        MoneyBag a = MoneyBag.of(Money.cents(5), Money.fromMinor(7, USD));
+        MoneyBag b = MoneyBag.of(Money.fromMinor(7, USD)).plus(Money.cents(5));
+        assertThat(a, is(b));
+        assertThat(a.hashCode(), is(b.hashCode()));
+        assertThat(a.equals(MoneyBag.of(Money.cents(5))), is(false));
+    }
+
+    /**
+     * Tests that looking up a currency without amounts does not register it.
+     */
+    @Test
+    public void testUnregisteredCurrency() {
+        Currency unregistered = Currency.getInstance("QQQ");
+        int size = CurrencyRegistry.size();
+        MoneyBag bag = MoneyBag.of(Money.cents(5));
+        assertThat(bag.getMinor(unregistered), is(0L));
+        assertThat(MoneyBag.builder().getMinor(unregistered), is(0L));
+        assertThat(CurrencyRegistry.size(), is(size));
+    }
+}
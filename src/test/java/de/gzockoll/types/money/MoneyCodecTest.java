@@ -0,0 +1,173 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the binary money codec.
+ */
+public class MoneyCodecTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private static final Money[] VALUES = { Money.euros(12), Money.fromMinor(-1, EUR),
+            Money.fromMinor(Long.MIN_VALUE, EUR), Money.fromMajor(100, Currency.getInstance("JPY")),
+            Money.fromMinor(1234, Currency.getInstance("OMR")), new Money(new BigDecimal("1.005"), EUR),
+            new Money(new BigDecimal("123456789012345678901234.56"), Currency.getInstance("USD")),
+            new Money(new BigDecimal("1.0"), EUR), new Money(new BigDecimal("-7"), EUR) };
+
+    /**
+     * Tests round trip through a byte buffer.
+     */
+    @Test
+    public void testByteBufferRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        MoneyCodec.write(VALUES, buffer);
+        buffer.flip();
+        Money[] result = new Money[VALUES.length];
+        MoneyCodec.read(buffer, result);
+        assertThat(result, is(VALUES));
+        assertThat(buffer.hasRemaining(), is(false));
+    }
+
+    /**
+     * Tests round trip through data streams.
+     */
+    @Test
+    public void testDataStreamRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Money value : VALUES)
+            MoneyCodec.write(value, out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (Money value : VALUES)
+            assertThat(MoneyCodec.read(in), is(value));
+    }
+
+    /**
+     * Tests the fixed layout.
+     */
+    @Test
+    public void testFixedLayout() {
+        ByteBuffer buffer = ByteBuffer.allocate(MoneyCodec.FIXED_SIZE);
+        MoneyCodec.write(Money.fromMinor(1234, EUR), buffer);
+        assertThat(buffer.position(), is(MoneyCodec.FIXED_SIZE));
+        assertThat(buffer.getShort(0), is((short) (('E' - 'A') * 26 * 26 + ('U' - 'A') * 26 + 'R' - 'A')));
+        assertThat(buffer.getLong(2), is(1234L));
+    }
+
+    /**
+     * Tests bulk decoding into primitive arrays.
+     */
+    @Test
+    public void testPrimitiveRoundTrip() {
+        int eur = CurrencyRegistry.indexOf(EUR);
+        int jpy = CurrencyRegistry.indexOf(Currency.getInstance("JPY"));
+        long[] minors = { 1, -2, 3 };
+        int[] indexes = { eur, jpy, eur };
+        ByteBuffer buffer = ByteBuffer.allocate(3 * MoneyCodec.FIXED_SIZE);
+        MoneyCodec.write(minors, indexes, 0, 3, buffer);
+        buffer.flip();
+        long[] decodedMinors = new long[4];
+        int[] decodedIndexes = new int[4];
+        MoneyCodec.read(buffer, decodedMinors, decodedIndexes, 1, 3);
+        assertThat(decodedMinors, is(new long[]{0, 1, -2, 3}));
+        assertThat(decodedIndexes, is(new int[]{0, eur, jpy, eur}));
+    }
+
+    /**
+     * Tests that historic numeric codes map to the current currency.
+     */
+    @Test
+    public void testSharedNumericCode() {
+        assertThat(CurrencyRegistry.currencyAt(CurrencyRegistry.indexOfNumericCode(484)),
+                is(Currency.getInstance("MXN")));
+        assertThat(CurrencyRegistry.indexOfNumericCode(0), is(-1));
+    }
+
+    /**
+     * Tests that currencies sharing a numeric code keep their identity.
+     */
+    @Test
+    public void testSharedNumericCodeRoundTrip() {
+        int[] indexes = { CurrencyRegistry.indexOf(Currency.getInstance("MXP")),
+                CurrencyRegistry.indexOf(Currency.getInstance("MXN")),
+                CurrencyRegistry.indexOf(Currency.getInstance("ILR")) };
+        ByteBuffer buffer = ByteBuffer.allocate(3 * MoneyCodec.FIXED_SIZE);
+        MoneyCodec.write(new long[] { 1, 2, 3 }, indexes, 0, 3, buffer);
+        buffer.flip();
+        int[] decodedIndexes = new int[3];
+        MoneyCodec.read(buffer, new long[3], decodedIndexes, 0, 3);
+        assertThat(decodedIndexes, is(indexes));
+    }
+
+    /**
+     * Tests that a negative length is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLength() {
+        ByteBuffer buffer = corrupt(-1);
+        MoneyCodec.read(buffer);
+    }
+
+    /**
+     * Tests that a length beyond the input is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testLengthBeyondInput() throws IOException {
+        ByteBuffer buffer = corrupt(Integer.MAX_VALUE);
+        MoneyCodec.read(new DataInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.limit())));
+    }
+
+    private static ByteBuffer corrupt(int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        MoneyCodec.write(new Money(new BigDecimal("1.005"), EUR), buffer);
+        buffer.putInt(6, length);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Tests that an unknown currency code is rejected without registering
+     * it.
+     */
+    @Test
+    public void testUnknownCurrencyCode() {
+        int size = CurrencyRegistry.size();
+        ByteBuffer buffer = ByteBuffer.allocate(MoneyCodec.FIXED_SIZE);
+        buffer.putShort((short) (('Q' - 'A') * 26 * 26 + ('Q' - 'A') * 26 + 'Q' - 'A')).putLong(1);
+        buffer.flip();
+        try {
+            MoneyCodec.read(buffer);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(CurrencyRegistry.size(), is(size));
+        }
+    }
+
+    /**
+     * Tests that sub-minor amounts are rejected by primitive decoding.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEscapedAmountInPrimitiveDecoding() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        MoneyCodec.write(new Money(new BigDecimal("1.005"), EUR), buffer);
+        buffer.flip();
+        MoneyCodec.read(buffer, new long[1], new int[1], 0, 1);
+    }
+}
@@ -0,0 +1,123 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the money column.
+ */
+public class MoneyColumnTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * JPY currency.
+     */
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    /**
+     * Tests sum of a single currency column.
+     */
+    @Test
+    public void testSum() {
+        MoneyColumn column = MoneyColumn.of(new long[]{100, 250, -50}, EUR);
+        assertThat(column.isSingleCurrency(), is(true));
+        assertThat(column.sum(), is(Money.fromMinor(300, EUR)));
+        assertThat(column.negate().sum(), is(Money.fromMinor(-300, EUR)));
+    }
+
+    /**
+     * Tests a column with mixed currencies.
+     */
+    @Test
+    public void testMixedCurrencies() {
+        MoneyColumn column = MoneyColumn.of(Arrays.asList(Money.euros(1), Money.fromMajor(5, JPY),
+                Money.cents(20)));
+        assertThat(column.isSingleCurrency(), is(false));
+        assertThat(column.sum(EUR), is(Money.fromMinor(120, EUR)));
+        assertThat(column.sum(JPY), is(Money.fromMinor(5, JPY)));
+        assertThat(column.filter(EUR).sum(), is(Money.fromMinor(120, EUR)));
+        assertThat(column.currencyAt(1), is(JPY));
+    }
+
+    /**
+     * Tests sum of a mixed column is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSumOfMixedCurrenciesIsRejected() {
+        MoneyColumn.builder().add(1, EUR).add(1, JPY).build().sum();
+    }
+
+    /**
+     * Tests scaling matches Money.multiply.
+     */
+    @Test
+    public void testScale() {
+        MoneyColumn column = MoneyColumn.of(new long[]{10000, 9500, 1, -9500}, EUR);
+        MoneyColumn scaled = column.scale(new BigDecimal("0.19"), RoundingMode.HALF_UP);
+        for (int i = 0; i < column.size(); i++)
+            assertThat(scaled.get(i), is(column.get(i).multiply(new BigDecimal("0.19")).scaled()));
+
+        MoneyColumn big = MoneyColumn.of(new long[]{Long.MAX_VALUE / 4}, EUR);
+        assertThat(big.scale(new BigDecimal("2"), RoundingMode.UNNECESSARY).minorAt(0), is(Long.MAX_VALUE / 4 * 2));
+    }
+
+    /**
+     * Tests filtering.
+     */
+    @Test
+    public void testFilter() {
+        MoneyColumn column = MoneyColumn.builder().add(100, EUR).add(-5, JPY).add(300, EUR).build();
+        MoneyColumn positive = column.filter(minor -> minor > 0);
+        assertThat(positive.size(), is(2));
+        assertThat(positive.sum(EUR), is(Money.fromMinor(400, EUR)));
+    }
+
+    /**
+     * Tests allocation of every amount.
+     */
+    @Test
+    public void testAllocate() {
+        MoneyColumn column = MoneyColumn.of(new long[]{5900, 6002}, EUR);
+        MoneyColumn[] thirds = column.allocate(3);
+        assertThat(thirds[0].get(0), is(Money.fromMinor(1967, EUR)));
+        assertThat(thirds[2].get(0), is(Money.fromMinor(1966, EUR)));
+
+        MoneyColumn[] parts = column.allocate(new long[]{3, 2, 1});
+        assertThat(parts[0].minorAt(1) + parts[1].minorAt(1) + parts[2].minorAt(1), is(6002L));
+        assertThat(parts[2].get(1), is(Money.euros(10)));
+    }
+
+    /**
+     * Tests the list view.
+     */
+    @Test
+    public void testListView() {
+        List<Money> list = MoneyColumn.of(new long[]{1, 2}, EUR).asList();
+        assertThat(list, is(Arrays.asList(Money.cents(1), Money.cents(2))));
+    }
+
+    /**
+     * Tests that filtering by a currency without amounts does not register
+     * it.
+     */
+    @Test
+    public void testUnregisteredCurrency() {
+        Currency unregistered = Currency.getInstance("QQQ");
+        int size = CurrencyRegistry.size();
+        assertThat(MoneyColumn.of(new long[]{1, 2}, EUR).filter(unregistered).size(), is(0));
+        assertThat(MoneyColumn.builder().add(1, EUR).add(2, JPY).build().filter(unregistered).size(), is(0));
+        assertThat(CurrencyRegistry.size(), is(size));
+    }
+}
@@ -0,0 +1,98 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the money context.
+ */
+public class MoneyContextTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Tests that the default context does not round.
+     */
+    @Test
+    public void testUnlimited() {
+        assertThat(MoneyContext.current(), is(MoneyContext.UNLIMITED));
+        Money m = Money.euros(1).multiply(new BigDecimal("1.03")).multiply(new BigDecimal("1.03"));
+        assertThat(m.getAmount(), is(new BigDecimal("1.060900")));
+    }
+
+    /**
+     * Tests an explicit context.
+     */
+    @Test
+    public void testExplicitContext() {
+        MoneyContext context = MoneyContext.of(6, RoundingMode.HALF_EVEN);
+        Money m = Money.euros(100);
+        for (int i = 0; i < 400; i++)
+            m = m.multiply(new BigDecimal("1.03"), context);
+        assertThat(m.getAmount().scale(), is(6));
+        Money exact = Money.euros(100).multiplyRepeated(new BigDecimal("1.03"), 400);
+        assertThat(m.subtract(exact).getAmount().abs().compareTo(BigDecimal.ONE) < 0, is(true));
+        context = MoneyContext.of(3, RoundingMode.HALF_EVEN);
+        assertThat(Money.cents(1).multiply(0.5, context).getAmount(), is(new BigDecimal("0.005")));
+        assertThat(Money.cents(1).multiply(0.05, context).getAmount(), is(new BigDecimal("0.000")));
+    }
+
+    /**
+     * Tests a rounding step.
+     */
+    @Test
+    public void testRoundingStep() {
+        MoneyContext cash = MoneyContext.of(2, RoundingMode.HALF_UP).withRoundingStep(new BigDecimal("0.05"));
+        assertThat(Money.cents(1012).add(Money.cents(1), cash), is(Money.cents(1015)));
+        assertThat(Money.cents(1012).subtract(Money.cents(1), cash), is(Money.cents(1010)));
+        assertThat(Money.cents(1000).multiply(new BigDecimal("1.0025"), cash), is(Money.cents(1005)));
+        assertThat(MoneyContext.of(2, RoundingMode.DOWN).withRoundingStep(new BigDecimal("10")).round(
+                new BigDecimal("19.99")), is(new BigDecimal("10.00")));
+        assertThat(MoneyContext.of(2, RoundingMode.HALF_UP).withRoundingStep(new BigDecimal("0.5")).round(
+                new BigDecimal("1.26")), is(new BigDecimal("1.50")));
+        assertThat(Money.cents(1012).add(Money.cents(1), cash).getAmount().scale(), is(2));
+    }
+
+    /**
+     * Tests that a step with more digits than the maximum scale is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRoundingStep() {
+        MoneyContext.of(2, RoundingMode.HALF_UP).withRoundingStep(new BigDecimal("0.001"));
+    }
+
+    /**
+     * Tests that a negative scale is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeScale() {
+        MoneyContext.of(-1, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Tests the scoped context.
+     */
+    @Test
+    public void testScope() {
+        MoneyContext outer = MoneyContext.of(4, RoundingMode.HALF_UP);
+        MoneyContext inner = MoneyContext.of(2, RoundingMode.DOWN);
+        try (MoneyContext.Scope scope = outer.activate()) {
+            assertThat(MoneyContext.current(), is(outer));
+            try (MoneyContext.Scope nested = inner.activate()) {
+                assertThat(Money.cents(1).multiply(new BigDecimal("1.9")), is(Money.cents(1)));
+            }
+            assertThat(Money.cents(1).multiply(new BigDecimal("1.23456")).getAmount(), is(new BigDecimal(
+                    "0.0123")));
+        }
+        assertThat(MoneyContext.current(), is(MoneyContext.UNLIMITED));
+    }
+}
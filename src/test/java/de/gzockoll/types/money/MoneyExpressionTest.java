@@ -0,0 +1,120 @@
+package de.gzockoll.types.money;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Test for the MoneyExpression class.
+ */
+public class MoneyExpressionTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Tests that evaluation matches the unrounded Money chain.
+     */
+    @Test
+    public void testMatchesChain() {
+        BigDecimal rate = new BigDecimal("1.19");
+        BigDecimal discount = new BigDecimal("0.975");
+        Money fee = Money.fromMinor(35, EUR);
+        Money rebate = new Money(new BigDecimal("0.125"), EUR);
+        MoneyExpression expression = MoneyExpression.of(EUR).multiply(rate).add(fee).subtract(rebate).multiply(
+                discount);
+        Random random = new Random(42);
+        try (MoneyContext.Scope scope = MoneyContext.UNLIMITED.activate()) {
+            for (int i = 0; i < 1000; i++) {
+                Money value = Money.fromMinor(random.nextInt(10000000) - 5000000, EUR);
+                Money expected = value.multiply(rate).add(fee).subtract(rebate).multiply(discount).scaled();
+                assertThat(expression.evaluate(value), is(expected));
+                assertThat(expression.evaluateMinor(value.asMinor()), is(expected.asMinor()));
+            }
+        }
+    }
+
+    /**
+     * Tests batch evaluation in minor currency.
+     */
+    @Test
+    public void testEvaluateMinorBatch() {
+        MoneyExpression expression = MoneyExpression.of(EUR).multiply(new BigDecimal("0.015")).add(
+                Money.fromMinor(25, EUR));
+        long[] minors = { 0, 1000, 333, -1000 };
+        long[] results = new long[4];
+        expression.evaluateMinor(minors, results, 4);
+        assertThat(results[0], is(25L));
+        assertThat(results[1], is(40L));
+        assertThat(results[2], is(30L));
+        assertThat(results[3], is(10L));
+    }
+
+    /**
+     * Tests a configured rounding and an offset below minor currency.
+     */
+    @Test
+    public void testRounding() {
+        MoneyExpression expression = MoneyExpression.of(EUR).add(new Money(new BigDecimal("0.004"), EUR)).rounding(
+                RoundingMode.UP);
+        assertThat(expression.evaluate(Money.fromMinor(100, EUR)), is(Money.fromMinor(101, EUR)));
+        assertThat(expression.evaluateMinor(100), is(101L));
+        assertThat(expression.negate().evaluateMinor(100), is(-101L));
+    }
+
+    /**
+     * Tests that the offset is added before rounding for negative
+     * intermediate values and ties.
+     */
+    @Test
+    public void testSingleRounding() {
+        MoneyExpression half = MoneyExpression.of(EUR).multiply(new BigDecimal("0.5"));
+        assertThat(half.add(Money.fromMinor(100, EUR)).evaluate(Money.fromMinor(-1, EUR)), is(Money.fromMinor(100,
+                EUR)));
+        MoneyExpression even = half.add(Money.fromMinor(1, EUR)).rounding(RoundingMode.HALF_EVEN);
+        assertThat(even.evaluate(Money.fromMinor(1, EUR)), is(Money.fromMinor(2, EUR)));
+        long[] results = new long[2];
+        even.evaluateMinor(new long[] { 1, -3 }, results, 2);
+        assertThat(results[0], is(2L));
+        assertThat(results[1], is(0L));
+    }
+
+    /**
+     * Tests all rounding modes against BigDecimal.
+     */
+    @Test
+    public void testRoundingModes() {
+        Random random = new Random(7);
+        for (RoundingMode mode : RoundingMode.values()) {
+            if (mode == RoundingMode.UNNECESSARY)
+                continue;
+            for (int i = 0; i < 2000; i++) {
+                BigDecimal factor = BigDecimal.valueOf(random.nextInt(2001) - 1000, 3);
+                Money offset = new Money(BigDecimal.valueOf(random.nextInt(20001) - 10000, 3), EUR);
+                long minor = random.nextInt(20001) - 10000;
+                MoneyExpression expression = MoneyExpression.of(EUR).multiply(factor).add(offset).rounding(mode);
+                long expected = BigDecimal.valueOf(minor, 2).multiply(factor).add(offset.getAmount()).setScale(2,
+                        mode).unscaledValue().longValueExact();
+                assertThat(expression.evaluateMinor(minor), is(expected));
+                assertThat(expression.evaluate(Money.fromMinor(minor, EUR)).asMinor(), is(expected));
+            }
+        }
+    }
+
+    /**
+     * Tests that a currency mismatch is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatch() {
+        MoneyExpression.of(EUR).add(Money.fromMinor(1, Currency.getInstance("USD")));
+    }
+}
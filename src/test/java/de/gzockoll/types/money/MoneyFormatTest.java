@@ -0,0 +1,79 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the money format.
+ */
+public class MoneyFormatTest {
+
+    private static final Locale[] LOCALES = { Locale.US, Locale.GERMANY, Locale.FRANCE, Locale.UK, Locale.JAPAN,
+            new Locale("de", "CH"), new Locale("nl", "NL"), new Locale("hi", "IN") };
+
+    private static final String[] CURRENCIES = { "EUR", "USD", "JPY", "OMR", "CHF" };
+
+    private static final String[] AMOUNTS = { "0", "0.01", "-0.01", "1", "12.5", "999.999", "1234.56", "-1234.56", "-0.001",
+            "1234567.891", "-98765432109.87", "92233720368547758.07", "123456789012345678901234.5" };
+
+    /**
+     * Tests that formatting matches DecimalFormat for several locales.
+     */
+    @Test
+    public void testFormatMatchesDecimalFormat() {
+        for (Locale locale : LOCALES) {
+            for (String code : CURRENCIES) {
+                Currency currency = Currency.getInstance(code);
+                MoneyFormat format = MoneyFormat.getInstance(locale, currency);
+                DecimalFormat expected = (DecimalFormat) NumberFormat.getCurrencyInstance(locale);
+                expected.setCurrency(java.util.Currency.getInstance(code));
+                expected.setMinimumFractionDigits(currency.getDefaultFractionDigits());
+                expected.setMaximumFractionDigits(currency.getDefaultFractionDigits());
+                for (String amount : AMOUNTS) {
+                    BigDecimal value = new BigDecimal(amount);
+                    assertThat(locale + " " + code + " " + amount,
+                            format.format(value, new StringBuilder()).toString(), is(expected.format(value)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests formatting from minor units.
+     */
+    @Test
+    public void testFormatMinor() {
+        MoneyFormat format = MoneyFormat.getInstance(Locale.US, Currency.getInstance("USD"));
+        assertThat(format.formatMinor(123456789, new StringBuilder()).toString(), is("$1,234,567.89"));
+        assertThat(format.formatMinor(-5, new StringBuilder()).toString(), is("-$0.05"));
+        assertThat(format.formatMinor(Long.MIN_VALUE, new StringBuilder()).toString(),
+                is("-$92,233,720,368,547,758.08"));
+    }
+
+    /**
+     * Tests that the currency of the amount is used.
+     */
+    @Test
+    public void testCurrencyOfAmountIsUsed() {
+        assertThat(Money.euros(10).getAsFormattedString(Locale.GERMANY), is("10,00\u00a0\u20ac"));
+        assertThat(Money.fromMajor(10, Currency.getInstance("JPY")).getAsFormattedString(Locale.US), is("\u00a510"));
+    }
+
+    /**
+     * Tests that instances are cached.
+     */
+    @Test
+    public void testInstancesAreShared() {
+        Currency eur = Currency.getInstance("EUR");
+        assertThat(MoneyFormat.getInstance(Locale.GERMANY, eur) == MoneyFormat.getInstance(Locale.GERMANY, eur),
+                is(true));
+    }
+}
@@ -0,0 +1,114 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for the canonical keys and the counter of amounts.
+ */
+public class MoneyKeyTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * USD currency.
+     */
+    private static final Currency USD = Currency.getInstance("USD");
+
+    /**
+     * Tests that keys do not depend on the scale.
+     */
+    @Test
+    public void testScaleIndependent() {
+        MoneyKey key = MoneyKey.of(new Money(new BigDecimal("1.0"), EUR));
+        assertThat(MoneyKey.of(new Money(new BigDecimal("1.000"), EUR)), is(key));
+        assertThat(MoneyKey.of(100, EUR), is(key));
+        assertThat(MoneyKey.of(100, EUR).hashCode(), is(key.hashCode()));
+        assertThat(MoneyKey.of(100, USD), is(not(key)));
+        assertThat(key.getMinor(), is(100L));
+        assertThat(key.toMoney(), is(Money.fromMinor(100, EUR)));
+    }
+
+    /**
+     * Tests keys of amounts below minor currency.
+     */
+    @Test
+    public void testExact() {
+        MoneyKey key = MoneyKey.of(new Money(new BigDecimal("1.0050"), EUR));
+        assertThat(key.isMinor(), is(false));
+        assertThat(key, is(MoneyKey.of(new Money(new BigDecimal("1.005"), EUR))));
+        assertThat(key, is(not(MoneyKey.of(Money.fromMinor(100, EUR)))));
+        assertThat(key.toMoney().getAmount(), is(new BigDecimal("1.005")));
+    }
+
+    /**
+     * Tests that the counter matches a HashMap of keys.
+     */
+    @Test
+    public void testCounter() {
+        Random random = new Random(42);
+        MoneyCounter counter = new MoneyCounter();
+        Map<MoneyKey, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            Money money = Money.fromMinor(random.nextInt(5000) - 2500, random.nextBoolean() ? EUR : USD);
+            long count = counter.add(money);
+            assertThat(count, is(expected.merge(MoneyKey.of(money), 1L, Long::sum)));
+        }
+        assertThat(counter.size(), is(expected.size()));
+        counter.forEach((currency, minor, count) -> assertThat(count, is(expected.get(MoneyKey.of(minor,
+                currency)))));
+        assertThat(counter.count(new Money(new BigDecimal("0.0"), EUR)), is(counter.count(0, EUR)));
+        assertThat(counter.count(new Money(new BigDecimal("0.001"), EUR)), is(0L));
+    }
+
+    /**
+     * Tests counting columns and merging counters.
+     */
+    @Test
+    public void testAddAll() {
+        MoneyCounter counter = new MoneyCounter(4);
+        counter.addAll(MoneyColumn.of(new long[] { 1, 2, 2, 3 }, EUR));
+        MoneyCounter other = new MoneyCounter();
+        other.add(2, EUR);
+        other.add(2, USD);
+        counter.addAll(other);
+        assertThat(counter.count(2, EUR), is(3L));
+        assertThat(counter.count(2, USD), is(1L));
+        assertThat(counter.contains(Money.fromMinor(3, EUR)), is(true));
+        assertThat(counter.contains(Money.fromMinor(4, EUR)), is(false));
+        assertThat(counter.size(), is(4));
+    }
+
+    /**
+     * Tests that the counter rejects invalid currencies.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCounterInvalidCurrency() {
+        new MoneyCounter().add(100, Currency.getInstance("XYZ"));
+    }
+
+    /**
+     * Tests that counting a currency without amounts does not register it.
+     */
+    @Test
+    public void testCounterUnregisteredCurrency() {
+        Currency unregistered = Currency.getInstance("QQQ");
+        int size = CurrencyRegistry.size();
+        MoneyCounter counter = new MoneyCounter();
+        counter.add(0, EUR);
+        assertThat(counter.count(0, unregistered), is(0L));
+        assertThat(CurrencyRegistry.size(), is(size));
+    }
+}
@@ -0,0 +1,111 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the money metrics. Counting from startup is tested by the
+ * <code>metrics-enabled</code> surefire execution, which runs this test with
+ * <code>-Dde.gzockoll.types.money.metrics=true</code>.
+ */
+public class MoneyMetricsTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Resets the counters.
+     */
+    @Before
+    public void setUp() {
+        MoneyMetrics.reset();
+    }
+
+    /**
+     * Tests that nothing is counted while disabled.
+     */
+    @Test
+    public void testDisabled() {
+        Assume.assumeTrue(!MoneyMetrics.isEnabled());
+        Money.fromMinor(12345, EUR).add(Money.cents(1)).getAsFormattedString(Locale.GERMANY);
+        for (MoneyMetrics.Counter counter : MoneyMetrics.Counter.values())
+            assertThat(MoneyMetrics.get(counter), is(0L));
+    }
+
+    /**
+     * Tests counting.
+     */
+    @Test
+    public void testEnabled() {
+        Assume.assumeTrue(MoneyMetrics.isEnabled());
+        Money m = Money.fromMinor(12345, EUR).add(Money.cents(1));
+        assertThat(MoneyMetrics.get(MoneyMetrics.Counter.CONSTRUCTIONS) >= 1, is(true));
+        assertThat(MoneyMetrics.get(MoneyMetrics.Counter.VALIDATION_CACHE_HITS) >= 1, is(true));
+
+        MoneyFormat.getInstance(Locale.GERMANY, EUR).format(m);
+        assertThat(MoneyMetrics.get(MoneyMetrics.Counter.FORMATS), is(1L));
+
+        try {
+            m.add(Money.fromMinor(1, Currency.getInstance("USD")));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(MoneyMetrics.get(MoneyMetrics.Counter.CURRENCY_MISMATCHES), is(1L));
+        }
+
+        m.multiply(new BigDecimal("1.0000000000000000000000000000000000001"));
+        assertThat(MoneyMetrics.get(MoneyMetrics.Counter.HUGE_SCALE_RESULTS), is(1L));
+
+        MoneyMetrics.reset();
+        assertThat(MoneyMetrics.snapshot().get(MoneyMetrics.Counter.CONSTRUCTIONS), is(0L));
+    }
+
+    /**
+     * Tests that no event is allocated while neither metrics nor a recording
+     * need it.
+     */
+    @Test
+    public void testNoEventWhileDisabled() {
+        boolean enabled = MoneyMetrics.isEnabled();
+        try {
+            MoneyMetrics.setEnabled(false);
+            assertThat(MoneyEvents.beginMultiply() == null, is(true));
+            assertThat(MoneyEvents.beginValidationMiss() == null, is(true));
+            MoneyMetrics.setEnabled(true);
+            assertThat(MoneyEvents.beginMultiply() == null, is(false));
+        } finally {
+            MoneyMetrics.setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Tests switching metrics at runtime.
+     */
+    @Test
+    public void testSwitch() {
+        boolean enabled = MoneyMetrics.isEnabled();
+        try {
+            MoneyMetrics.setEnabled(true);
+            assertThat(MoneyMetrics.isEnabled(), is(true));
+            MoneyFormat.getInstance(Locale.GERMANY, EUR).format(Money.fromMinor(12345, EUR));
+            assertThat(MoneyMetrics.get(MoneyMetrics.Counter.FORMATS), is(1L));
+
+            MoneyMetrics.setEnabled(false);
+            assertThat(MoneyMetrics.isEnabled(), is(false));
+            MoneyFormat.getInstance(Locale.GERMANY, EUR).format(Money.fromMinor(12345, EUR));
+            assertThat(MoneyMetrics.get(MoneyMetrics.Counter.FORMATS), is(1L));
+        } finally {
+            MoneyMetrics.setEnabled(enabled);
+        }
+    }
+}
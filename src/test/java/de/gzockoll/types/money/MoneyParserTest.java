@@ -0,0 +1,162 @@
+package de.gzockoll.types.money;
+
+import com.ibm.icu.util.Currency;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the money parser.
+ */
+public class MoneyParserTest {
+
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private final MoneyParser parser = new MoneyParser();
+
+    /**
+     * Tests parsing the toString form.
+     */
+    @Test
+    public void testToStringRoundTrip() {
+        Money[] values = { Money.euros(12), Money.fromMinor(-1234, EUR), Money.fromMinor(5, EUR),
+                Money.fromMajor(1000, Currency.getInstance("JPY")),
+                Money.fromMinor(1234, Currency.getInstance("OMR")), Money.fromMinor(Long.MAX_VALUE, EUR),
+                Money.fromMinor(Long.MIN_VALUE + 1, EUR), new Money(new BigDecimal("1.0"), EUR),
+                new Money(new BigDecimal("7"), EUR), new Money(new BigDecimal("-0.5"), EUR),
+                new Money(new BigDecimal("1.000"), EUR) };
+        for (Money value : values)
+            assertThat(parser.parse(value.toString()), is(value));
+    }
+
+    /**
+     * Tests that the parsed amount keeps its scale.
+     */
+    @Test
+    public void testScale() {
+        assertThat(parser.parse("1.0 EUR").getAmount(), is(new BigDecimal("1.0")));
+        assertThat(parser.parse("1.00 EUR"), is(Money.euros(1)));
+        assertThat(parser.parse("1.0 EUR").equals(Money.euros(1)), is(false));
+        assertThat(parser.parseMinor("1.0 EUR", 0, 7), is(100L));
+    }
+
+    /**
+     * Tests parsing amounts in exponent notation.
+     */
+    @Test
+    public void testExponent() {
+        Money tiny = new Money(new BigDecimal("1E-7"), EUR);
+        assertThat(tiny.toString(), is("1E-7 EUR"));
+        assertThat(parser.parse(tiny.toString()), is(tiny));
+        assertThat(parser.parse("1.0E+3 EUR"), is(new Money(new BigDecimal("1.0E+3"), EUR)));
+        assertThat(parser.parse("EUR 25e-2"), is(Money.fromMinor(25, EUR)));
+        assertThat(parser.parseMinor("1.0E+3 EUR", 0, 10), is(100000L));
+        assertThat(parser.parse("1E+30 EUR"), is(new Money(new BigDecimal("1E+30"), EUR)));
+        assertThat(parser.parse("2.00EUR"), is(Money.fromMinor(200, EUR)));
+    }
+
+    /**
+     * Tests parsing money from a char array.
+     */
+    @Test
+    public void testParseCharArray() {
+        char[] text = "x 1.50 EUR".toCharArray();
+        assertThat(parser.parse(text, 2, 8), is(Money.fromMinor(150, EUR)));
+        assertThat(parser.parse(text, 2, 8).getCurrency(), is(EUR));
+    }
+
+    /**
+     * Tests parsing the ISO code first form.
+     */
+    @Test
+    public void testCodeFirst() {
+        assertThat(parser.parse("EUR 12.34"), is(Money.fromMinor(1234, EUR)));
+        assertThat(parser.parse("EUR-0.50"), is(Money.fromMinor(-50, EUR)));
+        assertThat(parser.parse("  USD 7.00  "), is(Money.fromMajor(7, Currency.getInstance("USD"))));
+    }
+
+    /**
+     * Tests that amounts beyond minor units are kept exactly.
+     */
+    @Test
+    public void testSubMinorAmount() {
+        assertThat(parser.parse("1.005 EUR"), is(new Money(new BigDecimal("1.005"), EUR)));
+        assertThat(parser.parse("123456789012345678901.23 EUR"), is(new Money(new BigDecimal(
+                "123456789012345678901.23"), EUR)));
+    }
+
+    /**
+     * Tests parsing minor units from a part of a CharSequence.
+     */
+    @Test
+    public void testParseMinor() {
+        String line = "id;12.3 EUR;x";
+        assertThat(parser.parseMinor(line, 3, 11), is(1230L));
+        assertThat(parser.getCurrency(), is(EUR));
+        char[] chars = "xxEUR 42".toCharArray();
+        assertThat(parser.parseMinor(chars, 2, 6), is(4200L));
+    }
+
+    /**
+     * Tests parsing from a byte buffer.
+     */
+    @Test
+    public void testParseByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap("a,99.99 CHF,b".getBytes(StandardCharsets.US_ASCII));
+        buffer.position(2).limit(11);
+        assertThat(parser.parseMinor(buffer), is(9999L));
+        assertThat(parser.getCurrency(), is(Currency.getInstance("CHF")));
+        assertThat(buffer.position(), is(2));
+        assertThat(parser.parse(buffer), is(Money.fromMinor(9999, Currency.getInstance("CHF"))));
+    }
+
+    /**
+     * Tests error positions.
+     */
+    @Test
+    public void testErrors() {
+        assertError("12,34 EUR", 2);
+        assertError("12.34", 5);
+        assertError("12. EUR", 3);
+        assertError("EUR", 3);
+        assertError("12.34 EURO", 9);
+        assertError("12.34 eur", 6);
+        assertError("12.34 XYZ", 6);
+        try {
+            parser.parseMinor("x 1.005 EUR", 2, 11);
+            fail("Exception expected!");
+        } catch (MoneyParseException e) {
+            assertThat(e.getErrorOffset(), is(2));
+        }
+    }
+
+    /**
+     * Tests that an invalid currency is neither registered nor cached.
+     */
+    @Test
+    public void testInvalidCurrencyNotRegistered() {
+        int size = CurrencyRegistry.size();
+        for (int i = 0; i < 2; i++)
+            assertError("1.00 XQA", 5);
+        assertThat(CurrencyRegistry.registeredIndexOf(Currency.getInstance("XQA")), is(-1));
+        assertThat(CurrencyRegistry.size(), is(size));
+    }
+
+    private void assertError(String text, int offset) {
+        try {
+            parser.parse(text);
+            fail("Exception expected!");
+        } catch (MoneyParseException e) {
+            assertThat(text, e.getErrorOffset(), is(offset));
+        }
+    }
+}
@@ -3,12 +3,15 @@ package de.gzockoll.types.money;
 import com.ibm.icu.util.Currency;
 import com.ibm.icu.util.ULocale;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
 import org.joda.time.Interval;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Locale;
+import java.util.Random;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
@@ -135,6 +138,52 @@ public class MoneyTest {
         assertThat(m.scaled(), is(Money.fromMinor(13642372, yen)));
     }
 
+    /**
+     * Tests repeated multiplication against the naive loop.
+     */
+    @Test
+    public void testMultiplyRepeated() {
+        assertThat(Money.euros(100).multiplyRepeated(new BigDecimal("1.03"), 400),
+                is(Money.fromMinor(1364237182, EUR)));
+        Random random = new Random(7);
+        Currency yen = Currency.getInstance("JPY");
+        for (int i = 0; i < 200; i++) {
+            Money m = Money.fromMinor(random.nextInt(2000000) - 1000000, i % 2 == 0 ? EUR : yen);
+            BigDecimal factor = BigDecimal.valueOf(random.nextInt(2000) + 1, 3);
+            int n = random.nextInt(40);
+            Money naive = m;
+            for (int j = 0; j < n; j++)
+                naive = naive.multiply(factor);
+            assertThat(m.multiplyRepeated(factor, n), is(naive.scaled()));
+        }
+    }
+
+    /**
+     * Tests repeated multiplication with results exactly between two minor
+     * units.
+     */
+    @Test
+    public void testMultiplyRepeatedOnRoundingBoundary() {
+        assertThat(Money.fromMinor(1, EUR).multiplyRepeated(new BigDecimal("0.5"), 1), is(Money.fromMinor(1, EUR)));
+        assertThat(Money.fromMinor(5, EUR).multiplyRepeated(new BigDecimal("0.1"), 1), is(Money.fromMinor(1, EUR)));
+        assertThat(Money.fromMinor(125, EUR).multiplyRepeated(new BigDecimal("0.1"), 2), is(Money.fromMinor(1, EUR)));
+        assertThat(Money.fromMinor(-125, EUR).multiplyRepeated(new BigDecimal("0.1"), 2), is(Money.fromMinor(-1, EUR)));
+        assertThat(Money.fromMinor(2, EUR).multiplyRepeated(new BigDecimal("0.5"), 2), is(Money.fromMinor(1, EUR)));
+        assertThat(Money.fromMinor(-2, EUR).multiplyRepeated(new BigDecimal("0.5"), 2), is(Money.fromMinor(-1, EUR)));
+    }
+
+    /**
+     * Tests repeated multiplication of several amounts.
+     */
+    @Test
+    public void testMultiplyRepeatedBatch() {
+        BigDecimal factor = new BigDecimal("1.0025");
+        Money[] values = { Money.euros(100), Money.cents(1), Money.euros(-123456789), Money.zero(EUR) };
+        Money[] results = Money.multiplyRepeated(values, factor, 360);
+        for (int i = 0; i < values.length; i++)
+            assertThat(results[i], is(values[i].multiplyRepeated(factor, 360)));
+    }
+
     /**
      * Tests constructors.
      */
@@ -226,6 +275,62 @@ public class MoneyTest {
         assertThat(alloc[2], is(Money.euros(10)));
     }
 
+    /**
+     * Tests that the remainder goes to the largest remainders, not the first
+     * portions.
+     */
+    @Test
+    public void testAllocationByLargestRemainder() {
+        Money[] alloc = Money.fromMinor(10, EUR).allocate(new long[]{5, 1});
+        assertThat(alloc[0], is(Money.fromMinor(8, EUR)));
+        assertThat(alloc[1], is(Money.fromMinor(2, EUR)));
+
+        alloc = Money.fromMinor(-100, EUR).allocate(new long[]{1, 1, 4});
+        assertThat(alloc[0], is(Money.fromMinor(-17, EUR)));
+        assertThat(alloc[1], is(Money.fromMinor(-17, EUR)));
+        assertThat(alloc[2], is(Money.fromMinor(-66, EUR)));
+    }
+
+    /**
+     * Tests allocation of large amounts with large ratios against an exact
+     * computation.
+     */
+    @Test
+    public void testAllocationWithLargeRatios() {
+        java.util.Random random = new Random(42);
+        long amount = Long.MAX_VALUE / 3;
+        long[] ratios = new long[1000];
+        for (int i = 0; i < ratios.length; i++)
+            ratios[i] = random.nextLong() >>> 12;
+        long[] results = new long[ratios.length];
+        Money.fromMinor(amount, EUR).allocateMinor(ratios, results);
+
+        BigInteger total = BigInteger.ZERO;
+        for (long ratio : ratios)
+            total = total.add(BigInteger.valueOf(ratio));
+        long sum = 0;
+        for (int i = 0; i < ratios.length; i++) {
+            BigInteger quota = BigInteger.valueOf(amount)
+                    .multiply(BigInteger.valueOf(ratios[i])).divide(total);
+            long difference = results[i] - quota.longValueExact();
+            assertThat(difference == 0 || difference == 1, is(true));
+            sum += results[i];
+        }
+        assertThat(sum, is(amount));
+    }
+
+    /**
+     * Tests that zero ratios get nothing.
+     */
+    @Test
+    public void testAllocationWithZeroRatio() {
+        long[] results = new long[3];
+        Money.fromMinor(Long.MIN_VALUE, EUR).allocateMinor(new long[]{0, 1, 1}, results);
+        assertThat(results[0], is(0L));
+        assertThat(results[1], is(Long.MIN_VALUE / 2));
+        assertThat(results[2], is(Long.MIN_VALUE / 2));
+    }
+
     /**
      * Tests multiply.
      */
@@ -389,4 +494,57 @@ public class MoneyTest {
         assertThat(Money.isCurrencyValid(franc, new Interval(aDate, aDate)),
                 is(false));
     }
+
+    /**
+     * Test cached validity follows the current day
+     */
+    @Test
+    public void cached_validity_should_be_rechecked_when_the_day_changes() {
+        Currency franc = Currency.getInstance("FRF");
+        try {
+            DateTimeUtils.setCurrentMillisFixed(new DateTime(2001, 12, 1, 0, 0).getMillis());
+            assertThat(Money.isCurrencyValid(franc), is(true));
+            assertThat(Money.isCurrencyValid(franc), is(true));
+            DateTimeUtils.setCurrentMillisFixed(new DateTime(2002, 12, 1, 0, 0).getMillis());
+            assertThat(Money.isCurrencyValid(franc), is(false));
+        } finally {
+            DateTimeUtils.setCurrentMillisSystem();
+        }
+    }
+
+    /**
+     * Test arithmetic results keep the currency of the operands
+     */
+    @Test
+    public void arithmetic_should_keep_the_currency() {
+        Money m = Money.euros(10).add(Money.cents(5)).negate().multiply(new BigDecimal("2"));
+        assertThat(m.getCurrency(), is(EUR));
+        assertThat(m, is(Money.fromMinor(-2010, EUR)));
+    }
+
+    /**
+     * Test zero of other currencies
+     */
+    @Test
+    public void zero_should_be_detected_for_every_currency() {
+        Currency yen = Currency.getInstance("JPY");
+        assertThat(Money.zero(yen).isZero(), is(true));
+        assertThat(Money.fromMinor(0, EUR).isZero(), is(true));
+        assertThat(Money.euros(1).subtract(Money.euros(1)).isZero(), is(true));
+        assertThat(Money.cents(1).isZero(), is(false));
+    }
+
+    /**
+     * Test small values are shared
+     */
+    @Test
+    public void small_values_should_be_shared_instances() {
+        assertThat(Money.zero(EUR) == Money.fromMinor(0, EUR), is(true));
+        assertThat(Money.cents(1) == Money.fromMinor(1, EUR), is(true));
+        assertThat(Money.euros(100) == Money.fromMajor(100, EUR), is(true));
+        assertThat(Money.euros(100) == Money.fromMinor(10000, EUR), is(true));
+        assertThat(Money.euros(101) == Money.euros(101), is(false));
+        assertThat(Money.fromMinor(-1, EUR) == Money.fromMinor(-1, EUR), is(false));
+        assertThat(Money.euros(100).getAmount().scale(), is(2));
+    }
 }
@@ -0,0 +1,277 @@
+package de.gzockoll.types.money;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.ibm.icu.util.Currency;
+
+/**
+ * Test for the MoneyWindowProcessor class.
+ */
+public class MoneyWindowProcessorTest {
+    /**
+     * EUR currency.
+     */
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    /**
+     * Tests tumbling count windows and the last partial window.
+     */
+    @Test
+    public void testTumblingCount() throws Exception {
+        MoneyWindowProcessor processor = MoneyWindowProcessor.builder().tumblingCount(2).build();
+        List<Map<Currency, Money>> windows = run(processor, 1, 2, 3, 4, 5);
+        assertThat(windows.size(), is(3));
+        assertThat(windows.get(0).get(EUR), is(eur(3)));
+        assertThat(windows.get(1).get(EUR), is(eur(7)));
+        assertThat(windows.get(2).get(EUR), is(eur(5)));
+    }
+
+    /**
+     * Tests sliding count windows.
+     */
+    @Test
+    public void testSlidingCount() throws Exception {
+        MoneyWindowProcessor processor = MoneyWindowProcessor.builder().slidingCount(4, 2).build();
+        List<Map<Currency, Money>> windows = run(processor, 1, 2, 3, 4, 5, 6);
+        assertThat(windows.size(), is(3));
+        assertThat(windows.get(0).get(EUR), is(eur(3)));
+        assertThat(windows.get(1).get(EUR), is(eur(10)));
+        assertThat(windows.get(2).get(EUR), is(eur(18)));
+    }
+
+    /**
+     * Tests that windows hold totals per currency.
+     */
+    @Test
+    public void testCurrencies() throws Exception {
+        MoneyWindowProcessor processor = MoneyWindowProcessor.builder().tumblingCount(3).build();
+        List<Map<Currency, Money>> windows = run(processor, Arrays.asList(new Money(new BigDecimal("1.10"), EUR),
+                new Money(new BigDecimal("2.25"), USD), new Money(new BigDecimal("0.90"), EUR)));
+        assertThat(windows.size(), is(1));
+        assertThat(windows.get(0).get(EUR), is(new Money(new BigDecimal("2.00"), EUR)));
+        assertThat(windows.get(0).get(USD), is(new Money(new BigDecimal("2.25"), USD)));
+    }
+
+    /**
+     * Tests that a time window is published without further values.
+     */
+    @Test
+    public void testTumblingTime() throws Exception {
+        MoneyWindowProcessor processor = MoneyWindowProcessor.builder().tumblingTime(Duration.ofMillis(20)).build();
+        Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<Money> source = new SubmissionPublisher<>()) {
+            source.subscribe(processor);
+            source.submit(eur(1));
+            source.submit(eur(2));
+            assertTrue(collector.first.await(5, TimeUnit.SECONDS));
+        }
+        assertThat(collector.windows.get(0).get(EUR), is(eur(3)));
+    }
+
+    /**
+     * Tests that a subscriber requesting one window at a time receives all
+     * windows.
+     */
+    @Test
+    public void testBackpressure() throws Exception {
+        MoneyWindowProcessor processor = MoneyWindowProcessor.builder().tumblingCount(1).bufferCapacity(2).build();
+        Collector collector = new Collector(1);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<Money> source = new SubmissionPublisher<>()) {
+            source.subscribe(processor);
+            for (int i = 0; i < 100; i++)
+                source.submit(eur(1));
+        }
+        assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+        assertThat(collector.windows.size(), is(100));
+    }
+
+    /**
+     * Tests that onNext does not wait for a slow subscriber but holds back
+     * the requests to upstream until windows are taken.
+     */
+    @Test
+    public void testBackpressureWithoutBlocking() throws Exception {
+        MoneyWindowProcessor processor = MoneyWindowProcessor.builder().tumblingCount(1).bufferCapacity(2).build();
+        Collector collector = new Collector(0);
+        processor.subscribe(collector);
+        AtomicLong requested = new AtomicLong();
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        long delivered = 0;
+        for (int i = 0; i < 50; i++) {
+            for (; delivered < requested.get(); delivered++)
+                processor.onNext(eur(1));
+            Thread.sleep(5);
+        }
+        assertTrue(delivered < 20);
+        collector.subscription().request(Long.MAX_VALUE);
+        for (int i = 0; i < 500 && delivered < 100; i++) {
+            for (; delivered < requested.get() && delivered < 100; delivered++)
+                processor.onNext(eur(1));
+            Thread.sleep(5);
+        }
+        processor.onComplete();
+        assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+        assertThat(collector.windows.size(), is(100));
+    }
+
+    /**
+     * Tests that a subscriber which does not request windows does not stall
+     * the time windows of other processors.
+     */
+    @Test
+    public void testSlowSubscriberOnSharedScheduler() throws Exception {
+        MoneyWindowProcessor slow = MoneyWindowProcessor.builder().tumblingTime(Duration.ofMillis(5)).bufferCapacity(1)
+                .build();
+        Collector slowCollector = new Collector(0);
+        slow.subscribe(slowCollector);
+        MoneyWindowProcessor other = MoneyWindowProcessor.builder().tumblingTime(Duration.ofMillis(5)).build();
+        Collector collector = new Collector(Long.MAX_VALUE);
+        other.subscribe(collector);
+        try (SubmissionPublisher<Money> slowSource = new SubmissionPublisher<>();
+                SubmissionPublisher<Money> source = new SubmissionPublisher<>()) {
+            slowSource.subscribe(slow);
+            source.subscribe(other);
+            for (int i = 0; i < 10; i++) {
+                slowSource.submit(eur(1));
+                Thread.sleep(10);
+            }
+            source.submit(eur(2));
+            assertTrue(collector.first.await(5, TimeUnit.SECONDS));
+            slow.onError(new IllegalStateException("stop"));
+            slowCollector.subscription().request(Long.MAX_VALUE);
+            assertTrue(slowCollector.completed.await(5, TimeUnit.SECONDS));
+        }
+        assertThat(collector.windows.get(0).get(EUR), is(eur(2)));
+    }
+
+    /**
+     * Tests that the upstream is cancelled when all subscribers cancel.
+     */
+    @Test
+    public void testCancelPropagatesUpstream() throws Exception {
+        MoneyWindowProcessor processor = MoneyWindowProcessor.builder().tumblingCount(1).build();
+        CountDownLatch cancelled = new CountDownLatch(1);
+        processor.subscribe(new Collector(1) {
+            @Override
+            public void onNext(Map<Currency, Money> item) {
+                subscription().cancel();
+                cancelled.countDown();
+            }
+        });
+        try (SubmissionPublisher<Money> source = new SubmissionPublisher<>()) {
+            source.subscribe(processor);
+            source.submit(eur(1));
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 100 && source.getNumberOfSubscribers() > 0; i++) {
+                source.submit(eur(1));
+                Thread.sleep(10);
+            }
+            assertThat(source.getNumberOfSubscribers(), is(0));
+        }
+    }
+
+    /**
+     * Tests invalid windows.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlide() {
+        MoneyWindowProcessor.builder().slidingCount(5, 2);
+    }
+
+    private static Money eur(long amount) {
+        return new Money(BigDecimal.valueOf(amount * 100, 2), EUR);
+    }
+
+    private static List<Map<Currency, Money>> run(MoneyWindowProcessor processor, long... amounts)
+            throws InterruptedException {
+        Money[] values = new Money[amounts.length];
+        for (int i = 0; i < amounts.length; i++)
+            values[i] = eur(amounts[i]);
+        return run(processor, Arrays.asList(values));
+    }
+
+    private static List<Map<Currency, Money>> run(MoneyWindowProcessor processor, List<Money> values)
+            throws InterruptedException {
+        Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<Money> source = new SubmissionPublisher<>()) {
+            source.subscribe(processor);
+            for (Money value : values)
+                source.submit(value);
+        }
+        assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+        return collector.windows;
+    }
+
+    /**
+     * Collects windows, requesting a number of windows at a time.
+     */
+    private static class Collector implements Flow.Subscriber<Map<Currency, Money>> {
+        final List<Map<Currency, Money>> windows = new CopyOnWriteArrayList<>();
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        private final long batch;
+        private Flow.Subscription subscription;
+
+        Collector(long batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0)
+                subscription.request(batch);
+        }
+
+        @Override
+        public void onNext(Map<Currency, Money> item) {
+            windows.add(item);
+            first.countDown();
+            if (batch > 0 && batch != Long.MAX_VALUE)
+                subscription.request(batch);
+        }
+
+        Flow.Subscription subscription() {
+            return subscription;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}